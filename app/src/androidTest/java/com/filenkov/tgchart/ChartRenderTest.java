@@ -0,0 +1,159 @@
+package com.filenkov.tgchart;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders ChartView with synthetic charts of increasing size into a bitmap and compares it with golden images
+ * of day and night mode. Goldens depend on fonts and density, so they are kept per API level and density
+ * in assets/golden, cases without golden for the device are skipped.
+ * Run with {@code -e recordGoldens true} to write rendered images to external files dir of the app
+ * instead of comparing them, see assets/golden/README.md. Frame budget of geometry is checked on JVM
+ * by FrameBudgetTest of core.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChartRenderTest {
+  private static final int WIDTH = 720;
+  private static final int GRAPHS_COUNT = 2;
+  private static final long SEED = 18;
+  /**
+   * Max share of pixels which may differ from golden, antialiasing may change between builds of Skia.
+   */
+  private static final float MAX_DIFF_SHARE = 0.001f;
+  /**
+   * Max difference of a color channel of equal pixels.
+   */
+  private static final int CHANNEL_TOLERANCE = 8;
+
+  @Test
+  public void smallChart() throws IOException {
+    check(112);
+  }
+
+  @Test
+  public void mediumChart() throws IOException {
+    check(10000);
+  }
+
+  @Test
+  public void largeChart() throws IOException {
+    check(1000000);
+  }
+
+  private void check(final int valuesCount) throws IOException {
+    ChartData chart = SyntheticCharts.create(GRAPHS_COUNT, valuesCount, SEED);
+    compare(render(chart, false), "day_" + valuesCount);
+    compare(render(chart, true), "night_" + valuesCount);
+  }
+
+  /**
+   * Bind chart to new view, lay it out and draw it into bitmap in one pass of UI thread, so no animation
+   * frame runs in between and image is the same on every run.
+   */
+  private Bitmap render(final ChartData chart, final boolean nightMode) {
+    final Bitmap[] result = new Bitmap[1];
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+      @Override
+      public void run() {
+        ChartView view = createView(chart, nightMode);
+        Bitmap bitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
+        view.draw(new Canvas(bitmap));
+        view.onDestroy();
+        result[0] = bitmap;
+      }
+    });
+    return result[0];
+  }
+
+  private ChartView createView(final ChartData chart, final boolean nightMode) {
+    Context context = InstrumentationRegistry.getTargetContext();
+    ChartView view = new ChartView(context, null);
+    view.setBackgroundGeometryEnabled(false); // frames are drawn right after binding and drags
+    if (nightMode) {
+      view.setNightMode(false);
+    } else {
+      view.setDayMode(false);
+    }
+    view.setChartData(chart);
+    float density = context.getResources().getDisplayMetrics().density;
+    view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(ChartView.measureHeight(density, chart.graphsCount),
+            View.MeasureSpec.EXACTLY));
+    view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    return view;
+  }
+
+  private void compare(final Bitmap actual, final String name) throws IOException {
+    String fileName = name + "_api" + Build.VERSION.SDK_INT + "_"
+        + InstrumentationRegistry.getTargetContext().getResources().getDisplayMetrics().densityDpi + "dpi.png";
+    if ("true".equals(InstrumentationRegistry.getArguments().getString("recordGoldens"))) {
+      File dir = InstrumentationRegistry.getTargetContext().getExternalFilesDir("golden");
+      FileOutputStream os = new FileOutputStream(new File(dir, fileName));
+      try {
+        actual.compress(Bitmap.CompressFormat.PNG, 100, os);
+      } finally {
+        os.close();
+      }
+      return;
+    }
+
+    Bitmap golden;
+    try {
+      InputStream is = InstrumentationRegistry.getContext().getAssets().open("golden/" + fileName);
+      try {
+        golden = BitmapFactory.decodeStream(is);
+      } finally {
+        is.close();
+      }
+    } catch (IOException e) {
+      Assume.assumeNoException("No golden image " + fileName + ", record it with -e recordGoldens true,"
+          + " see assets/golden/README.md", e);
+      return;
+    }
+    assertTrue(fileName + " size differs", golden.getWidth() == actual.getWidth()
+        && golden.getHeight() == actual.getHeight());
+
+    int width = actual.getWidth();
+    int[] expectedRow = new int[width];
+    int[] actualRow = new int[width];
+    int differentCount = 0;
+    for (int y = 0; y < actual.getHeight(); y++) {
+      golden.getPixels(expectedRow, 0, width, 0, y, width, 1);
+      actual.getPixels(actualRow, 0, width, 0, y, width, 1);
+      for (int x = 0; x < width; x++) {
+        if (!isSameColor(expectedRow[x], actualRow[x])) {
+          differentCount++;
+        }
+      }
+    }
+    int maxCount = (int) (width * actual.getHeight() * MAX_DIFF_SHARE);
+    assertTrue(fileName + ": " + differentCount + " pixels differ, at most " + maxCount + " may",
+        differentCount <= maxCount);
+  }
+
+  private static boolean isSameColor(final int expected, final int actual) {
+    for (int shift = 0; shift < 32; shift += 8) {
+      if (Math.abs(((expected >>> shift) & 0xff) - ((actual >>> shift) & 0xff)) > CHANNEL_TOLERANCE) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,98 @@
+package com.filenkov.tgchart;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that ChartView.onDraw() doesn't allocate once warmed up, for a static frame and for frames
+ * of a window drag. Only draw() is counted, selection changes between frames request geometry
+ * on the worker and may allocate there.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChartViewAllocationTest {
+  private static final int WIDTH = 720;
+  private static final int FRAMES = 60;
+
+  @Test
+  public void staticFrame() {
+    check(10000, false);
+  }
+
+  @Test
+  public void dragFrames() {
+    check(10000, true);
+  }
+
+  @Test
+  public void dragFramesOfPackedChart() {
+    ChartData chart = SyntheticCharts.create(2, 100000, 8);
+    chart.pack();
+    check(chart, true);
+  }
+
+  private void check(final int valuesCount, final boolean drag) {
+    check(SyntheticCharts.create(2, valuesCount, 8), drag);
+  }
+
+  private void check(final ChartData chart, final boolean drag) {
+    final int[] allocations = new int[1];
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+      @Override
+      public void run() {
+        ChartView view = createView(chart);
+        Bitmap bitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawFrames(view, canvas, chart, drag); // warm up caches, labels and buffers
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        allocations[0] = drawFrames(view, canvas, chart, drag);
+        Debug.stopAllocCounting();
+        view.onDestroy();
+        bitmap.recycle();
+      }
+    });
+    assertEquals("allocations in draw of " + chart.valuesCount + " values", 0, allocations[0]);
+  }
+
+  /**
+   * @return count of allocations made by draw().
+   */
+  private static int drawFrames(final ChartView view, final Canvas canvas, final ChartData chart,
+                                final boolean drag) {
+    double width = chart.valuesCount / 4.0;
+    double step = (chart.valuesCount - 1 - width) / FRAMES;
+    int allocations = 0;
+    for (int i = 0; i < FRAMES; i++) {
+      if (drag) {
+        view.dragWindow(i * step, width);
+      }
+      int before = Debug.getThreadAllocCount();
+      view.draw(canvas);
+      allocations += Debug.getThreadAllocCount() - before;
+    }
+    return allocations;
+  }
+
+  private static ChartView createView(final ChartData chart) {
+    Context context = InstrumentationRegistry.getTargetContext();
+    ChartView view = new ChartView(context, null);
+    view.setBackgroundGeometryEnabled(false); // frames are drawn right after binding and drags
+    view.setChartData(chart);
+    float density = context.getResources().getDisplayMetrics().density;
+    view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(ChartView.measureHeight(density, chart.graphsCount),
+            View.MeasureSpec.EXACTLY));
+    view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    return view;
+  }
+}
@@ -0,0 +1,167 @@
+package com.filenkov.tgchart;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+/**
+ * Adapter of charts list.
+ * List creates views only for charts near the viewport and reuses them for other charts,
+ * so memory and layout cost don't grow with count of charts.
+ */
+class ChartAdapter extends BaseAdapter implements AbsListView.RecyclerListener {
+  private final LayoutInflater inflater;
+  private final ListView list;
+  private ChartData[] charts = new ChartData[0];
+  private ChartView.State[] states = new ChartView.State[0];
+  /**
+   * Messages of charts which failed to load, shown instead of loading placeholder.
+   */
+  private String[] errors = new String[0];
+  private boolean nightMode = false;
+  private boolean metricsOverlayEnabled = false;
+
+  /**
+   * @param inflater inflater of rows.
+   * @param list     list which shows the adapter, its visible rows are rebound when charts are loaded.
+   */
+  ChartAdapter(final LayoutInflater inflater, final ListView list) {
+    this.inflater = inflater;
+    this.list = list;
+  }
+
+  /**
+   * Set count of charts, all of them show placeholder until they are loaded.
+   *
+   * @param count count of charts.
+   */
+  void setChartsCount(final int count) {
+    charts = new ChartData[count];
+    states = new ChartView.State[count];
+    errors = new String[count];
+    for (int i = 0; i < count; i++) {
+      states[i] = new ChartView.State(i);
+    }
+    notifyDataSetChanged();
+  }
+
+  /**
+   * Set loaded chart. Only its row is rebound if it's visible, other rows keep their geometry and animations.
+   *
+   * @param index index of chart.
+   * @param chart chart.
+   */
+  void setChart(final int index, final ChartData chart) {
+    charts[index] = chart;
+    rebind(index);
+  }
+
+  /**
+   * Show error instead of chart which can't be loaded.
+   *
+   * @param index   index of chart.
+   * @param message error message.
+   */
+  void setChartError(final int index, final String message) {
+    errors[index] = message;
+    rebind(index);
+  }
+
+  /**
+   * Release loaded charts, adapter shows nothing after that.
+   */
+  void close() {
+    for (ChartData chart : charts) {
+      if (chart != null) {
+        chart.close();
+      }
+    }
+    charts = new ChartData[0];
+    states = new ChartView.State[0];
+    errors = new String[0];
+    notifyDataSetChanged();
+  }
+
+  void setNightMode(final boolean nightMode) {
+    this.nightMode = nightMode;
+  }
+
+  void setMetricsOverlayEnabled(final boolean enabled) {
+    metricsOverlayEnabled = enabled;
+  }
+
+  @Override
+  public int getCount() {
+    return charts.length;
+  }
+
+  @Override
+  public Object getItem(final int position) {
+    return charts[position];
+  }
+
+  @Override
+  public long getItemId(final int position) {
+    return position;
+  }
+
+  @Override
+  public boolean hasStableIds() {
+    return true;
+  }
+
+  @Override
+  public boolean areAllItemsEnabled() {
+    return false;
+  }
+
+  @Override
+  public boolean isEnabled(final int position) {
+    return false; // charts handle touches themselves
+  }
+
+  @Override
+  public View getView(final int position, final View convertView, final ViewGroup parent) {
+    View view = convertView;
+    if (view == null) {
+      view = inflater.inflate(R.layout.chart_item, parent, false);
+    }
+    ((TextView) view.findViewById(R.id.caption)).setText("Followers " + (position + 1));
+    ChartView chartView = view.findViewById(R.id.chart);
+    // mode of reused view is changed only if it differs, changing it redraws all layers
+    if (convertView == null || chartView.isNightMode() != nightMode) {
+      if (nightMode) {
+        chartView.setNightMode(false);
+      } else {
+        chartView.setDayMode(false);
+      }
+    }
+    chartView.setMetricsOverlayEnabled(metricsOverlayEnabled);
+    if (charts[position] != null) {
+      chartView.setChartData(charts[position], states[position]);
+    } else {
+      chartView.recycle(); // show placeholder
+      chartView.setPlaceholderMessage(errors[position]);
+    }
+    return view;
+  }
+
+  /**
+   * Bind row of position again if it's visible, rows which aren't visible are bound when they are shown.
+   */
+  private void rebind(final int position) {
+    int child = position - list.getFirstVisiblePosition();
+    if (child >= 0 && child < list.getChildCount()) {
+      getView(position, list.getChildAt(child), list);
+    }
+  }
+
+  @Override
+  public void onMovedToScrapHeap(final View view) {
+    ((ChartView) view.findViewById(R.id.chart)).recycle();
+  }
+}
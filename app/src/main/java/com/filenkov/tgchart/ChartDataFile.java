@@ -0,0 +1,244 @@
+package com.filenkov.tgchart;
+
+import android.content.res.AssetFileDescriptor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary columnar charts file produced at build time by convertChartData gradle task.
+ * All numbers are little-endian, columns are aligned to 8 bytes:
+ * <pre>
+ * int magic "TGCH", int version, int chartsCount, int[chartsCount] chart offsets
+ * for every chart:
+ *   int graphsCount, int valuesCount, int flags (bits 0-1 chart type, 2 y_scaled, 3 stacked, 4 percentage),
+ *   int CRC32 of columns (timeline and values with padding)
+ *   for every graph: int color (ARGB), int maximum, int nameLength, byte[nameLength] name (UTF-8)
+ *   long[valuesCount] timeline
+ *   for every graph: int[valuesCount] values
+ * </pre>
+ * Columns of long charts are copied to paged files in app storage, they start with a header:
+ * <pre>
+ * int magic "TGCP", int paged version, int CRC32 of columns in the asset, int valuesCount
+ * </pre>
+ */
+class ChartDataFile {
+  private static final int MAGIC = 0x48434754; // "TGCH"
+  private static final int VERSION = 3;
+  private static final int PAGED_MAGIC = 0x50434754; // "TGCP"
+  private static final int PAGED_VERSION = 1;
+  private static final int PAGED_HEADER_SIZE = 16;
+  private static final int TYPE_MASK = 3;
+  private static final int FLAG_Y_SCALED = 1 << 2;
+  private static final int FLAG_STACKED = 1 << 3;
+  private static final int FLAG_PERCENTAGE = 1 << 4;
+
+  /**
+   * Map charts file from assets. File must be stored uncompressed.
+   *
+   * @param fd asset file descriptor.
+   * @return little-endian buffer with file content.
+   */
+  static ByteBuffer map(final AssetFileDescriptor fd) throws IOException {
+    FileInputStream is = fd.createInputStream();
+    try {
+      FileChannel channel = is.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength())
+          .order(ByteOrder.LITTLE_ENDIAN);
+    } finally {
+      is.close(); // mapping stays valid after channel is closed
+    }
+  }
+
+  /**
+   * Read all charts.
+   *
+   * @param buffer file content.
+   * @return charts.
+   */
+  static ChartData[] read(final ByteBuffer buffer) throws IOException {
+    ChartData[] charts = new ChartData[chartsCount(buffer)];
+    for (int i = 0; i < charts.length; i++) {
+      charts[i] = read(buffer, i);
+    }
+    return charts;
+  }
+
+  /**
+   * Validate file header.
+   *
+   * @param buffer file content.
+   * @return count of charts in file.
+   */
+  static int chartsCount(final ByteBuffer buffer) throws IOException {
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a charts file");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported charts file version " + buffer.getInt(4));
+    }
+    return buffer.getInt(8);
+  }
+
+  /**
+   * @param buffer file content.
+   * @param index  index of chart.
+   * @return count of values in every graph of chart.
+   */
+  static int valuesCount(final ByteBuffer buffer, final int index) {
+    return buffer.getInt(buffer.getInt(12 + 4 * index) + 4);
+  }
+
+  /**
+   * Read one chart. Uses absolute positions only, so a duplicate of the same buffer
+   * is enough to read charts from different threads.
+   *
+   * @param buffer file content.
+   * @param index  index of chart.
+   * @return chart.
+   */
+  static ChartData read(final ByteBuffer buffer, final int index) throws IOException {
+    int position = buffer.getInt(12 + 4 * index);
+    ChartData chart = new ChartData(buffer.getInt(position), buffer.getInt(position + 4));
+    readFlags(buffer.getInt(position + 8), chart);
+    position = readGraphs(buffer, position + 16, chart);
+
+    ByteBuffer columns = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    columns.position(position);
+    columns.asLongBuffer().get(chart.timeline);
+    position += chart.valuesCount * 8;
+    for (int i = 0; i < chart.graphsCount; i++) {
+      columns.position(position);
+      columns.asIntBuffer().get(chart.graphs[i]);
+      position += align(chart.valuesCount * 4);
+    }
+    chart.buildRangeIndex();
+    chart.buildStacks();
+    return chart;
+  }
+
+  /**
+   * Read one chart into paged store. Columns are copied to the file once, the copy is reused while
+   * its header matches the asset. The copy is written to a temporary file which replaces the old one
+   * when it's complete, so an interrupted write never leaves a file which passes the check.
+   *
+   * @param buffer file content.
+   * @param index  index of chart.
+   * @param file   columns file in app storage.
+   * @return chart with paged values.
+   */
+  static ChartData readPaged(final ByteBuffer buffer, final int index, final File file) throws IOException {
+    int position = buffer.getInt(12 + 4 * index);
+    int graphsCount = buffer.getInt(position);
+    int valuesCount = buffer.getInt(position + 4);
+    int crc = buffer.getInt(position + 12);
+    int columnsPosition = position + 16;
+    for (int i = 0; i < graphsCount; i++) {
+      columnsPosition += 12 + buffer.getInt(columnsPosition + 8); // skip color, maximum and name
+    }
+    columnsPosition = align(columnsPosition);
+
+    int length = valuesCount * 8 + graphsCount * align(valuesCount * 4);
+    if (!isPagedValid(file, crc, valuesCount, length)) {
+      ByteBuffer header = ByteBuffer.allocate(PAGED_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(PAGED_MAGIC).putInt(PAGED_VERSION).putInt(crc).putInt(valuesCount);
+      header.flip();
+      ByteBuffer columns = buffer.duplicate();
+      columns.limit(columnsPosition + length);
+      columns.position(columnsPosition);
+
+      File temp = new File(file.getPath() + ".tmp");
+      FileOutputStream os = new FileOutputStream(temp);
+      try {
+        FileChannel channel = os.getChannel();
+        while (header.hasRemaining()) {
+          channel.write(header);
+        }
+        while (columns.hasRemaining()) {
+          channel.write(columns);
+        }
+        channel.force(true);
+      } finally {
+        os.close();
+      }
+      if (!temp.renameTo(file)) {
+        temp.delete();
+        throw new IOException("Can't replace " + file);
+      }
+    }
+
+    ChartData chart = new ChartData(graphsCount, valuesCount,
+        new PagedStore(file, PAGED_HEADER_SIZE, graphsCount, valuesCount, PagedStore.DEFAULT_MAX_CHUNKS));
+    readFlags(buffer.getInt(position + 8), chart);
+    readGraphs(buffer, position + 16, chart);
+    chart.buildStacks();
+    return chart;
+  }
+
+  /**
+   * @param file        paged file.
+   * @param crc         CRC32 of columns in the asset.
+   * @param valuesCount count of values.
+   * @param length      length of columns.
+   * @return true if file is a complete copy of the same columns written by this version.
+   */
+  private static boolean isPagedValid(final File file, final int crc, final int valuesCount, final int length)
+      throws IOException {
+    if (file.length() != PAGED_HEADER_SIZE + length) {
+      return false;
+    }
+    byte[] bytes = new byte[PAGED_HEADER_SIZE];
+    FileInputStream is = new FileInputStream(file);
+    try {
+      int read = 0;
+      int count;
+      while (read < bytes.length && (count = is.read(bytes, read, bytes.length - read)) > 0) {
+        read += count;
+      }
+    } finally {
+      is.close();
+    }
+    ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    return header.getInt(0) == PAGED_MAGIC && header.getInt(4) == PAGED_VERSION
+        && header.getInt(8) == crc && header.getInt(12) == valuesCount;
+  }
+
+  private static void readFlags(final int flags, final ChartData chart) {
+    chart.type = flags & TYPE_MASK;
+    chart.yScaled = (flags & FLAG_Y_SCALED) != 0;
+    chart.stacked = (flags & FLAG_STACKED) != 0;
+    chart.percentage = (flags & FLAG_PERCENTAGE) != 0;
+  }
+
+  /**
+   * Read colors, maximums and names of graphs.
+   *
+   * @param buffer   file content.
+   * @param position position of the first graph.
+   * @param chart    chart to fill.
+   * @return aligned position of columns.
+   */
+  private static int readGraphs(final ByteBuffer buffer, int position, final ChartData chart) throws IOException {
+    for (int i = 0; i < chart.graphsCount; i++) {
+      chart.colors[i] = buffer.getInt(position);
+      chart.maximums[i] = buffer.getInt(position + 4);
+      int nameLength = buffer.getInt(position + 8);
+      byte[] name = new byte[nameLength];
+      ByteBuffer nameBuffer = buffer.duplicate();
+      nameBuffer.position(position + 12);
+      nameBuffer.get(name);
+      chart.names[i] = new String(name, "UTF-8");
+      position += 12 + nameLength;
+    }
+    return align(position);
+  }
+
+  private static int align(final int position) {
+    return (position + 7) & ~7;
+  }
+}
@@ -0,0 +1,268 @@
+package com.filenkov.tgchart;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.os.Handler;
+import android.os.Looper;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads charts from assets in background.
+ * Every chart is read by its own task, so charts are parsed in parallel
+ * and every chart is delivered as soon as it's ready.
+ */
+class ChartLoader {
+  private static final String BINARY_ASSET = "chart_data.bin";
+  private static final String JSON_ASSET = "chart_data.json";
+  private static final String PAGED_DIR = "charts";
+  /**
+   * Charts with at least this count of values are kept in paged store instead of heap.
+   */
+  private static final int PAGED_VALUES_COUNT = 1 << 20;
+  /**
+   * Charts read to heap with at least this count of values are compressed.
+   */
+  private static final int PACKED_VALUES_COUNT = 1 << 16;
+
+  /**
+   * Receives loading results on UI thread.
+   */
+  interface Callback {
+    void onChartsCount(int count);
+
+    void onChartLoaded(int index, ChartData chart);
+
+    /**
+     * Chart can't be loaded, other charts are still loaded.
+     */
+    void onChartError(int index, String message);
+
+    /**
+     * Charts file can't be read, no charts are loaded.
+     */
+    void onError(String message);
+  }
+
+  /**
+   * Reads one chart.
+   */
+  private interface ChartTask {
+    ChartData read() throws IOException, JSONException;
+  }
+
+  private final Context context;
+  private final Callback callback;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final ExecutorService executor =
+      Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+  private volatile boolean cancelled = false;
+
+  ChartLoader(final Context context, final Callback callback) {
+    this.context = context;
+    this.callback = callback;
+  }
+
+  /**
+   * Start loading.
+   */
+  void start() {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        ChartTask[] tasks;
+        long startTime = StartupMetrics.begin(StartupMetrics.PHASE_ASSET);
+        try {
+          tasks = prepareTasks();
+        } catch (IOException e) {
+          deliverError("Error while reading graphs");
+          return;
+        } catch (JSONException e) {
+          deliverError("Error while parsing graphs to json");
+          return;
+        } catch (RuntimeException e) {
+          deliverError("Error while reading graphs: malformed file");
+          return;
+        } finally {
+          StartupMetrics.end(StartupMetrics.LAUNCH, StartupMetrics.PHASE_ASSET, startTime);
+        }
+        final int count = tasks.length;
+        handler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (!cancelled) {
+              callback.onChartsCount(count);
+            }
+          }
+        });
+        for (int i = 0; i < tasks.length && !cancelled; i++) {
+          runTask(i, tasks[i]);
+        }
+      }
+    });
+  }
+
+  /**
+   * Stop loading, no callbacks will be called after that.
+   */
+  void cancel() {
+    cancelled = true;
+    executor.shutdownNow();
+    handler.removeCallbacksAndMessages(null);
+  }
+
+  private void runTask(final int index, final ChartTask task) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          long startTime = StartupMetrics.begin(StartupMetrics.PHASE_PARSE);
+          final ChartData chart;
+          try {
+            chart = task.read();
+          } finally {
+            StartupMetrics.end(index, StartupMetrics.PHASE_PARSE, startTime);
+          }
+          if (chart.store == null && chart.valuesCount >= PACKED_VALUES_COUNT) {
+            startTime = StartupMetrics.begin(StartupMetrics.PHASE_PACK);
+            chart.pack();
+            StartupMetrics.end(index, StartupMetrics.PHASE_PACK, startTime);
+          }
+          handler.post(new Runnable() {
+            @Override
+            public void run() {
+              if (!cancelled) {
+                callback.onChartLoaded(index, chart);
+              } else {
+                chart.close();
+              }
+            }
+          });
+        } catch (IOException e) {
+          deliverChartError(index, "Error while reading graphs");
+        } catch (JSONException e) {
+          deliverChartError(index, "Error while parsing graphs to json");
+        } catch (RuntimeException e) {
+          // malformed chart, e.g. bad color or truncated file, doesn't stop other charts
+          deliverChartError(index, "Malformed chart");
+        }
+      }
+    });
+  }
+
+  private void deliverChartError(final int index, final String message) {
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (!cancelled) {
+          callback.onChartError(index, message);
+        }
+      }
+    });
+  }
+
+  private void deliverError(final String message) {
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (!cancelled) {
+          callback.onError(message);
+        }
+      }
+    });
+  }
+
+  /**
+   * Split charts file to tasks. Memory-mapped binary asset is used,
+   * json asset is used when binary one is not available.
+   * Long charts of binary asset are paged from app storage, json charts are always read to heap.
+   *
+   * @return task for every chart.
+   */
+  private ChartTask[] prepareTasks() throws IOException, JSONException {
+    ByteBuffer buffer;
+    try {
+      AssetFileDescriptor fd = context.getAssets().openFd(BINARY_ASSET);
+      try {
+        buffer = ChartDataFile.map(fd);
+      } finally {
+        fd.close();
+      }
+    } catch (IOException e) {
+      return prepareJsonTasks();
+    }
+
+    final ByteBuffer file = buffer;
+    final File pagedDir = new File(context.getFilesDir(), PAGED_DIR);
+    ChartTask[] tasks = new ChartTask[ChartDataFile.chartsCount(file)];
+    for (int i = 0; i < tasks.length; i++) {
+      final int index = i;
+      if (ChartDataFile.valuesCount(file, index) >= PAGED_VALUES_COUNT) {
+        tasks[i] = new ChartTask() {
+          @Override
+          public ChartData read() throws IOException {
+            if (!pagedDir.isDirectory() && !pagedDir.mkdirs()) {
+              throw new IOException("Can't create " + pagedDir);
+            }
+            return ChartDataFile.readPaged(file, index, new File(pagedDir, "chart" + index + ".bin"));
+          }
+        };
+      } else {
+        tasks[i] = new ChartTask() {
+          @Override
+          public ChartData read() throws IOException {
+            return ChartDataFile.read(file, index);
+          }
+        };
+      }
+    }
+    return tasks;
+  }
+
+  /**
+   * Read json asset and split it to chart objects without parsing them.
+   *
+   * @return task for every chart.
+   */
+  private ChartTask[] prepareJsonTasks() throws IOException, JSONException {
+    InputStream is = context.getAssets().open(JSON_ASSET);
+    byte[] json = new byte[Math.max(is.available(), 16 * 1024)];
+    int length = 0;
+    try {
+      int read;
+      while ((read = is.read(json, length, json.length - length)) > 0) {
+        length += read;
+        if (length == json.length) {
+          json = Arrays.copyOf(json, length * 2);
+        }
+      }
+    } finally {
+      is.close();
+    }
+
+    final byte[] bytes = json;
+    final int[] bounds = ChartDataReader.objectBounds(bytes, length);
+    ChartTask[] tasks = new ChartTask[bounds.length / 2];
+    for (int i = 0; i < tasks.length; i++) {
+      final int index = i;
+      tasks[i] = new ChartTask() {
+        @Override
+        public ChartData read() throws IOException, JSONException {
+          int start = bounds[2 * index];
+          return new ChartDataReader(new ByteArrayInputStream(bytes, start, bounds[2 * index + 1] - start))
+              .readChart();
+        }
+      };
+    }
+    return tasks;
+  }
+}
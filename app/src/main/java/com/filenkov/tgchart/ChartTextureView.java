@@ -0,0 +1,341 @@
+package com.filenkov.tgchart;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.SurfaceTexture;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.Surface;
+import android.view.TextureView;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Chart view which draws on its own render thread, so geometry and drawing don't wait for UI thread.
+ * Chart is drawn by the same ChartView code: an offscreen ChartView lives on render thread,
+ * it's laid out to size of texture and draws into its surface. UI thread passes commands and copies
+ * of touch events to render thread through lock-free queues, render thread applies them once per frame.
+ * Render thread lives while surface texture is available, i.e. while view is attached to window,
+ * commands passed without it wait for the next surface. Chart bound to this view must be changed only by append().
+ * On API 23+ chart is drawn with hardware canvas of the surface, older versions draw it with software canvas.
+ */
+public class ChartTextureView extends TextureView implements TextureView.SurfaceTextureListener {
+  private final float density;
+  /**
+   * Render thread and its handler, null while there is no surface.
+   */
+  private HandlerThread renderThread;
+  private Handler renderHandler;
+  /**
+   * Thread which is being stopped after surface was destroyed, new thread waits for it.
+   */
+  private HandlerThread stoppingThread;
+  private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+  private final ConcurrentLinkedQueue<MotionEvent> touchEvents = new ConcurrentLinkedQueue<>();
+  /**
+   * Indicate wake up of render thread is posted, so UI thread posts it once per batch of commands.
+   */
+  private final AtomicBoolean wakeScheduled = new AtomicBoolean(false);
+  /**
+   * Count of graphs of bound chart, height depends on it.
+   */
+  private int graphsCount = 0;
+  /**
+   * Touch position on ACTION_DOWN, horizontal drags aren't intercepted by parent.
+   */
+  private float touchDownX;
+  private float touchDownY;
+
+  // render thread state
+  private final ChartView renderer;
+  private ChartData chart;
+  private SurfaceTexture surfaceTexture;
+  private Surface surface;
+  private int surfaceWidth;
+  private int surfaceHeight;
+  private boolean frameScheduled = false;
+  private boolean dirty = false;
+
+  public ChartTextureView(final Context context, final AttributeSet attrs) {
+    super(context, attrs);
+    density = context.getResources().getDisplayMetrics().density;
+    setOpaque(true);
+    setSurfaceTextureListener(this);
+    renderer = new ChartView(context, null);
+    runOnRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        renderer.setInvalidateListener(invalidateListener);
+      }
+    });
+  }
+
+  /**
+   * Set chart graphs and restore user changes, see ChartView.setChartData().
+   *
+   * @param data  chart.
+   * @param state state of chart, it's updated on render thread until view is recycled, may be null.
+   */
+  public void setChartData(final ChartData data, final ChartView.State state) {
+    graphsCount = data.graphsCount;
+    runOnRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        chart = data;
+        renderer.setChartData(data, state);
+      }
+    });
+    requestLayout();
+  }
+
+  public void setDayMode() {
+    runOnRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        renderer.setDayMode(true);
+      }
+    });
+  }
+
+  public void setNightMode() {
+    runOnRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        renderer.setNightMode(true);
+      }
+    });
+  }
+
+  /**
+   * Append values to bound chart on render thread, see ChartData.append().
+   *
+   * @param timestamp timestamp of values.
+   * @param values    value of every graph, it's copied.
+   */
+  public void append(final long timestamp, final int[] values) {
+    final int[] copy = values.clone();
+    runOnRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        chart.append(timestamp, copy);
+        renderer.onChartAppended();
+      }
+    });
+  }
+
+  /**
+   * Show placeholder, see ChartView.recycle().
+   */
+  public void recycle() {
+    graphsCount = 0;
+    runOnRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        chart = null;
+        renderer.recycle();
+      }
+    });
+    requestLayout();
+  }
+
+  /**
+   * Pass command to render thread, it's run before drawing of the next frame.
+   */
+  private void runOnRenderThread(final Runnable command) {
+    commands.offer(command);
+    wakeRenderThread();
+  }
+
+  private void wakeRenderThread() {
+    if (renderHandler != null && wakeScheduled.compareAndSet(false, true)) {
+      renderHandler.post(wake);
+    }
+  }
+
+  /**
+   * Start render thread, commands passed while it was stopped are run on its first frame.
+   */
+  private void startRenderThread() {
+    if (stoppingThread != null) {
+      // previous thread only finishes its frame and releases its resources, both threads must not draw
+      try {
+        stoppingThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      stoppingThread = null;
+    }
+    renderThread = new HandlerThread("ChartRender", Process.THREAD_PRIORITY_DISPLAY);
+    renderThread.start();
+    renderHandler = new Handler(renderThread.getLooper());
+    wakeScheduled.set(false);
+    wakeRenderThread();
+  }
+
+  /**
+   * Release resources of render thread on it and quit it, queued commands are kept for the next thread.
+   */
+  private void stopRenderThread() {
+    final HandlerThread thread = renderThread;
+    renderHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+        frameScheduled = false;
+        renderer.onDrawThreadStopped();
+        releaseSurface();
+        thread.quit();
+      }
+    });
+    stoppingThread = thread;
+    renderThread = null;
+    renderHandler = null;
+  }
+
+  @Override
+  protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
+    setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), ChartView.measureHeight(density, graphsCount));
+  }
+
+  @SuppressLint("ClickableViewAccessibility")
+  @Override
+  public boolean onTouchEvent(final MotionEvent event) {
+    if (event.getAction() == MotionEvent.ACTION_DOWN) {
+      touchDownX = event.getX();
+      touchDownY = event.getY();
+    } else if (event.getAction() == MotionEvent.ACTION_MOVE && getParent() != null
+        && Math.abs(event.getX() - touchDownX) > Math.abs(event.getY() - touchDownY)) {
+      getParent().requestDisallowInterceptTouchEvent(true);
+    }
+    touchEvents.offer(MotionEvent.obtain(event));
+    wakeRenderThread();
+    return true;
+  }
+
+  @Override
+  public void onSurfaceTextureAvailable(final SurfaceTexture texture, final int width, final int height) {
+    startRenderThread();
+    runOnRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        surfaceTexture = texture;
+        surface = new Surface(texture);
+        resize(width, height);
+      }
+    });
+  }
+
+  @Override
+  public void onSurfaceTextureSizeChanged(final SurfaceTexture texture, final int width, final int height) {
+    runOnRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        resize(width, height);
+      }
+    });
+  }
+
+  @Override
+  public boolean onSurfaceTextureDestroyed(final SurfaceTexture texture) {
+    stopRenderThread();
+    return false; // released on render thread when it doesn't draw to it anymore
+  }
+
+  @Override
+  public void onSurfaceTextureUpdated(final SurfaceTexture texture) {
+  }
+
+  // render thread
+
+  private final Runnable wake = new Runnable() {
+    @Override
+    public void run() {
+      wakeScheduled.set(false);
+      requestFrame();
+    }
+  };
+
+  private final Runnable invalidateListener = new Runnable() {
+    @Override
+    public void run() {
+      dirty = true;
+      requestFrame();
+    }
+  };
+
+  private void requestFrame() {
+    if (!frameScheduled) {
+      frameScheduled = true;
+      Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+  }
+
+  /**
+   * Apply commands and touch events passed since the last frame and draw chart if it has changed.
+   */
+  private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+    @Override
+    public void doFrame(final long frameTimeNanos) {
+      frameScheduled = false;
+      for (Runnable command = commands.poll(); command != null; command = commands.poll()) {
+        command.run();
+      }
+      for (MotionEvent event = touchEvents.poll(); event != null; event = touchEvents.poll()) {
+        renderer.onTouchEvent(event);
+        event.recycle();
+      }
+      if (dirty && surface != null) {
+        draw();
+      }
+    }
+  };
+
+  private void resize(final int width, final int height) {
+    surfaceWidth = width;
+    surfaceHeight = height;
+    renderer.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+        MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+    renderer.layout(0, 0, width, height);
+    dirty = true;
+  }
+
+  private void draw() {
+    Canvas canvas;
+    try {
+      // canvas of Surface.lockCanvas() is software one, hardware canvas is available since API 23
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+        canvas = surface.lockHardwareCanvas();
+      } else {
+        canvas = surface.lockCanvas(null);
+      }
+    } catch (Surface.OutOfResourcesException | IllegalArgumentException e) {
+      return; // surface is being destroyed, it will be released by the next command
+    }
+    if (canvas == null) {
+      return;
+    }
+    dirty = false;
+    try {
+      canvas.clipRect(0, 0, surfaceWidth, surfaceHeight);
+      renderer.draw(canvas);
+    } finally {
+      surface.unlockCanvasAndPost(canvas);
+    }
+  }
+
+  private void releaseSurface() {
+    if (surface != null) {
+      surface.release();
+      surface = null;
+      surfaceTexture.release();
+      surfaceTexture = null;
+    }
+  }
+}
@@ -2,18 +2,20 @@ package com.filenkov.tgchart;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.RectF;
 import android.graphics.Typeface;
-import android.os.Handler;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.Locale;
 
 /**
@@ -21,15 +23,59 @@ import java.util.Locale;
  * Contains two parts: main chart and compact bar for scrolling and zooming.
  */
 public class ChartView extends View {
+  /**
+   * User changes of chart which are kept while view is recycled for other charts.
+   */
+  public static class State {
+    /**
+     * Index of chart in the list, startup phases of the view are recorded for it.
+     */
+    final int index;
+    double windowStart;
+    float windowWidth;
+    /**
+     * Null until view saves the state.
+     */
+    boolean[] displayedGraphs;
+
+    public State(final int index) {
+      this.index = index;
+    }
+  }
+
   private static final int INVISIBLE = 0;
   private static final int VISIBLE = 255;
   private static final String NO_DATA_MESSAGE = "Please, select graph to display";
+  private static final String LOADING_MESSAGE = "Loading...";
+  /**
+   * Count of graphs to reserve space for while chart is loading.
+   */
+  private static final int PLACEHOLDER_GRAPHS_COUNT = 2;
   /**
    * Count of level lines.
    */
   private static final int LEVELS_COUNT = 5;
-  private SimpleDateFormat valueboxDateFormat = new SimpleDateFormat("ccc, MMM d", Locale.getDefault());
-  private SimpleDateFormat timelineDateFormat = new SimpleDateFormat("MMM d", Locale.getDefault());
+  /**
+   * Duration of graph fade in and out.
+   */
+  private static final float ALPHA_DURATION_MS = 200;
+  /**
+   * Duration of chart and bar rescale since the last target change.
+   */
+  private static final float SCALE_DURATION_MS = 250;
+  /**
+   * Longest step of animation, used when frames were skipped.
+   */
+  private static final long MAX_FRAME_TIME_NS = 100_000_000;
+  private final DateFormatter dateFormatter = new DateFormatter(Locale.getDefault());
+  /**
+   * Timeline labels, formatted on demand when they become visible.
+   */
+  private final DateLabels timelineLabels = new DateLabels(dateFormatter, false, 64);
+  /**
+   * Value box labels.
+   */
+  private final DateLabels valueBoxLabels = new DateLabels(dateFormatter, true, 4);
   private int backgroundColor;
   private int textColor;
   private final float density;
@@ -41,14 +87,69 @@ public class ChartView extends View {
   private float chartHeight;
   private float currentScaleY;
   private float newScaleY;
-  private float scaleStep;
+  /**
+   * Speed of scale animation per ms.
+   */
+  private float scaleSpeed;
   private float chartLineWeight;
   private int chartMax;
   private int oldChartMax;
+  /**
+   * Value on the bottom of chart, 0 unless Y axis fits to minimum of selection.
+   */
+  private int chartMin;
+  private int oldChartMin;
+  private float currentMinY;
+  private float newMinY;
+  private float minSpeed;
+  /**
+   * Indicate Y axis starts from minimum of selection instead of zero.
+   */
+  private boolean fitMinimum = false;
+  /**
+   * Indicate graphs are reduced to about two points per pixel before building pathes.
+   */
+  private boolean decimationEnabled = true;
+  /**
+   * Indicate graphs are drawn by Canvas.drawLines() from vertex buffers instead of pathes.
+   */
+  private boolean vertexRendererEnabled = false;
+  /**
+   * Indicate geometry of charts which aren't live or stacked is built by workers, see GeometryWorker.
+   * Tests disable it to draw a frame right after binding.
+   */
+  private boolean backgroundGeometryEnabled = true;
+  /**
+   * Indicate numeric and date labels are drawn from glyph atlases instead of Canvas.drawText().
+   */
+  private boolean glyphLabelsEnabled = false;
+  /**
+   * Glyph atlases of timeline and levels, value box values and value box date, created when enabled.
+   */
+  private GlyphAtlas timesAtlas;
+  private GlyphAtlas valueAtlas;
+  private GlyphAtlas valueDateAtlas;
+  /**
+   * Indicate selection follows the newest values of live chart while it's at the end.
+   */
+  private boolean pinnedToNewest = false;
+  /**
+   * Values appended to live chart since the last frame, pathes are updated once per frame.
+   */
+  private boolean appendPending = false;
+  /**
+   * First absolute index and count of values of chart as they were on the last update of selection.
+   */
+  private long shownFirstIndex;
+  private int shownValuesCount;
+  /**
+   * Indices and values kept by decimation.
+   */
+  private int[] decimatedIndices = new int[0];
+  private int[] decimatedValues = new int[0];
   private int chartCurrentIndex;
   private float chartXstep;
   private float valueRadius;
-  private String[] dates;
 
   /**
    * All height of bar space (with frame).
@@ -60,10 +161,93 @@ public class ChartView extends View {
   private float barGraphHeight;
   private float barLineWeight;
   private int barMax;
+  /**
+   * Animated value of barMax, used by bar pathes.
+   */
+  private float currentBarMax;
+  private float barMaxSpeed;
   private float barXstep;
 
+  private boolean animationScheduled = false;
+  private long lastFrameTimeNs;
+  /**
+   * Vsync time of the previous tick of running animation, 0 before the first tick.
+   */
+  private long lastTickTimeNs;
+  /**
+   * Animation frame callback, called in sync with display refresh while something is in motion.
+   * Values are interpolated by elapsed time, so speed doesn't depend on draw time.
+   */
+  private Choreographer.FrameCallback animationFrameCallback = new Choreographer.FrameCallback() {
+    @Override
+    public void doFrame(final long frameTimeNanos) {
+      long intervalNs = lastTickTimeNs > 0 ? frameTimeNanos - lastTickTimeNs : 0;
+      frameMetrics.recordTick(System.nanoTime() - frameTimeNanos, intervalNs);
+      lastTickTimeNs = frameTimeNanos;
+      float elapsedMs = (float) Math.max(0, Math.min(frameTimeNanos - lastFrameTimeNs, MAX_FRAME_TIME_NS)) / 1_000_000;
+      lastFrameTimeNs = frameTimeNanos;
+      boolean repeat = false;
+
+      float alphaDelta = VISIBLE * elapsedMs / ALPHA_DURATION_MS;
+      for (int i = 0; i < chart.graphsCount; i++) {
+        int alpha = displayedGraphs[i] ? VISIBLE : INVISIBLE;
+        if (graphsAlpha[i] != alpha) {
+          graphsAlpha[i] = Math.round(approach(graphsAlpha[i], alpha, Math.max(1, alphaDelta)));
+          barDirty = true;
+          labelsDirty = true;
+          repeat |= graphsAlpha[i] != alpha;
+        }
+      }
+
+      if (currentBarMax != barMax) {
+        currentBarMax = approach(currentBarMax, barMax, barMaxSpeed * elapsedMs);
+        barTransformDirty = true;
+        barDirty = true;
+        repeat |= currentBarMax != barMax;
+      }
+
+      if (currentMinY != newMinY) {
+        currentMinY = approach(currentMinY, newMinY, minSpeed * elapsedMs);
+        chartTransformDirty = true;
+        repeat |= currentMinY != newMinY;
+      }
+
+      if (currentScaleY != newScaleY) {
+        currentScaleY = approach(currentScaleY, newScaleY, scaleSpeed * elapsedMs);
+        chartTransformDirty = true;
+        repeat |= currentScaleY != newScaleY;
+      }
+
+      for (int i = 0; i < chart.graphsCount; i++) {
+        if (graphScales[i] != newGraphScales[i]) {
+          graphScales[i] = approach(graphScales[i], newGraphScales[i], graphScaleSpeeds[i] * elapsedMs);
+          chartTransformDirty = true;
+          repeat |= graphScales[i] != newGraphScales[i];
+        }
+      }
+
+      invalidateLayers();
+      if (repeat) {
+        Choreographer.getInstance().postFrameCallback(this);
+      } else {
+        animationScheduled = false;
+      }
+    }
+  };
+
+  /**
+   * Indices of the first and the last values of visible window, window edges may be between them.
+   */
   private int selectionStart = 0;
   private int selectionEnd = 1;
+  /**
+   * Visible window starts at selectionStart + startOffset, startOffset is in [0, 1).
+   */
+  private float startOffset = 0;
+  /**
+   * Width of visible window in indices, it's kept exactly while window is panned.
+   */
+  private float windowWidth = 1;
   private float selectionStartX = 0;
   private float selectionEndX = 0;
   private float selectionMinWidth = 0;
@@ -74,18 +258,140 @@ public class ChartView extends View {
   private float checkboxSensitivity;
 
   int[] graphsAlpha;
+  /**
+   * Scale of every graph relative to the first displayed graph of y_scaled chart, 1 for other charts.
+   */
+  private float[] graphScales;
+  private float[] newGraphScales;
+  private float[] graphScaleSpeeds;
   float[] valuesWidthes;
   float[] namesWidthes;
+  /**
+   * Formatted values of value box for every graph.
+   */
+  private char[][] valuesChars;
+  private int[] valuesLengths;
+  /**
+   * Formatted level value.
+   */
+  private final char[] levelChars = new char[IntFormatter.MAX_LENGTH];
+  private final RectF checkboxRect = new RectF();
+  private final RectF valueBoxRect = new RectF();
 
   private RectF chartBounds;
   private RectF barBounds;
 
   private ChartData chart;
+  private State state;
   private boolean[] displayedGraphs;
-  private Path[] chartPathes;
+  /**
+   * Chart pathes in data space, see GraphPath, they are pathes of chartPoints.
+   * They are rebuilt only on selection change and extended when values are appended.
+   */
+  private GraphPath[] chartPathes;
+  /**
+   * Chart pathes in view space, result of chartPathes transformation by chartMatrix.
+   */
+  private Path[] chartDrawPathes;
+  private final Matrix chartMatrix = new Matrix();
+  /**
+   * Builds geometry of selection in background, see rebuildChartGeometry().
+   */
+  private GeometryWorker geometryWorker;
+  /**
+   * Geometry of selection: reduced points of every graph for vertex renderer or pathes for path renderer.
+   * It's front buffer of geometryWorker.
+   */
+  private GeometryWorker.Buffer chartPoints;
+  /**
+   * Graphs to build by geometryWorker.
+   */
+  private boolean[] geometryGraphs;
+  /**
+   * Vertex buffers of vertex renderer in view space, 4 floats per line segment.
+   */
+  private float[][] chartVertices;
+  private int[] chartVerticesCounts;
+  /**
+   * Indicate chartDrawPathes should be transformed again because of selection or scale change.
+   */
+  private boolean chartTransformDirty = true;
+  /**
+   * Range of absolute indices and bucket size of the latest geometry request. Geometry is built with margins
+   * around selection, so panning inside them doesn't rebuild it. Geometry of a background build covers
+   * chartPoints.from..to until the request is published, see isGeometryPublished().
+   * Rebuild decisions compare selection with the requested range, so a running build isn't requested again.
+   */
+  private long requestedFirstIndex;
+  private long requestedLastIndex;
+  private int requestedBucketSize = 0;
+  /**
+   * Visible window and X step of the last transformation of chart geometry,
+   * when only window start changes the geometry is translated by canvas.
+   */
+  private int transformedSelectionStart;
+  private float transformedStartOffset;
+  private float transformedXstep;
+  /**
+   * Sampled indices of stacked chart and tops of the previous and the current graph in view space,
+   * see buildStackPathes().
+   */
+  private int[] stackIndices = new int[0];
+  private float[] stackBottoms = new float[0];
+  private float[] stackTops = new float[0];
+  /**
+   * Sum of values of graphs fading in or out scaled by their alpha, added to precomputed sums.
+   */
+  private float[] stackCorrections = new float[0];
+  private float[] stackTotals = new float[0];
   private Path zeroLinePath;
   private Path timelinePath;
-  private Path[] barPathes;
+  /**
+   * Bar pathes in data space, see GraphPath, they are pathes of front buffer of barWorker.
+   */
+  private GraphPath[] barPathes;
+  /**
+   * Builds bar pathes of the whole chart in background, see prepareDrawBar().
+   */
+  private GeometryWorker barWorker;
+  /**
+   * All graphs, bar keeps pathes of hidden graphs too.
+   */
+  private boolean[] barGraphs;
+  /**
+   * Bar pathes in view space, result of barPathes transformation by barMatrix.
+   */
+  private Path[] barDrawPathes;
+  private final Matrix barMatrix = new Matrix();
+  /**
+   * Indicate barDrawPathes should be transformed again because of values or scale change.
+   */
+  private boolean barTransformDirty = true;
+  /**
+   * Cached image of bar graphs, it's redrawn only when barDirty is set.
+   */
+  private Bitmap barBitmap;
+  private Canvas barCanvas;
+  private float barBitmapLeft;
+  private float barBitmapTop;
+  private boolean barDirty = true;
+  /**
+   * Cached image of levels, graphs and dates, it's redrawn on invalidateLayers() but not on
+   * invalidateOverlay(), so moving value box doesn't redraw graphs. It's used only while plot is static:
+   * while window moves or animation runs plot is drawn directly, so it keeps hardware acceleration
+   * instead of rasterizing graphs to bitmap and uploading it every frame. Bitmap is created on the first
+   * static frame.
+   */
+  private Bitmap plotBitmap;
+  private Canvas plotCanvas;
+  private boolean plotDirty = true;
+  /**
+   * Cached image of checkboxes and graph names, it's redrawn on theme, chart and graph visibility change.
+   */
+  private Bitmap labelsBitmap;
+  private Canvas labelsCanvas;
+  private float labelsTop;
+  private boolean labelsDirty = true;
   private Path selectionPath;
   private Path nonSelectionPath;
 
@@ -140,6 +446,32 @@ public class ChartView extends View {
    */
   private boolean checkBoxTouchMode = false;
   private int checkBoxTouchedIndex = -1;
+  /**
+   * Frame time metrics of this view, kept while view is recycled for other charts.
+   */
+  private final FrameMetrics frameMetrics = new FrameMetrics();
+  /**
+   * Indicate metrics summary is drawn over chart.
+   */
+  private boolean metricsOverlayEnabled = false;
+  /**
+   * Text shown until chart is set.
+   */
+  private String placeholderMessage = LOADING_MESSAGE;
+  private final char[] metricsChars = new char[FrameMetrics.SUMMARY_LENGTH];
+  private Paint metricsPaint;
+  /**
+   * Called instead of invalidate() when view isn't attached and is drawn by ChartTextureView.
+   */
+  private Runnable invalidateListener;
+  /**
+   * Index of bound chart in StartupMetrics, LAUNCH for charts bound without state.
+   */
+  private int startupIndex = StartupMetrics.LAUNCH;
+  /**
+   * Bound chart isn't drawn yet, its first draw is recorded to StartupMetrics.
+   */
+  private boolean firstDrawPending = false;
 
   public ChartView(final Context context, final AttributeSet attrs) {
     super(context, attrs);
@@ -213,6 +545,10 @@ public class ChartView extends View {
 
     backgroundPaint = new Paint();
     backgroundPaint.setStyle(Paint.Style.FILL_AND_STROKE);
+
+    metricsPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    metricsPaint.setTextSize(density * 9);
+    metricsPaint.setColor(0xffe34c4c);
   }
 
   /**
@@ -234,8 +570,11 @@ public class ChartView extends View {
     namesPaint.setColor(textColor);
     timesPaint.setColor(0xffb2bbc1);
     backgroundPaint.setColor(backgroundColor);
+    barDirty = true;
+    plotDirty = true;
+    labelsDirty = true;
     if (invalidate) {
-      invalidate();
+      invalidateLayers();
     }
   }
 
@@ -258,57 +597,482 @@ public class ChartView extends View {
     namesPaint.setColor(textColor);
     timesPaint.setColor(0xff8698b0);
     backgroundPaint.setColor(backgroundColor);
+    barDirty = true;
+    plotDirty = true;
+    labelsDirty = true;
     if (invalidate) {
+      invalidateLayers();
+    }
+  }
+
+  /**
+   * Set text shown while no chart is set, e.g. error of chart which can't be loaded.
+   *
+   * @param message text or null for loading placeholder.
+   */
+  public void setPlaceholderMessage(final String message) {
+    String text = message != null ? message : LOADING_MESSAGE;
+    if (!text.equals(placeholderMessage)) {
+      placeholderMessage = text;
+      invalidateLayers();
+    }
+  }
+
+  /**
+   * @return true if "Night Mode" is applied.
+   */
+  public boolean isNightMode() {
+    return isNightMode;
+  }
+
+  /**
+   * Set Y axis bottom bound.
+   *
+   * @param fitMinimum true to start Y axis from minimum of selection, false to start it from zero.
+   */
+  public void setFitMinimum(final boolean fitMinimum) {
+    this.fitMinimum = fitMinimum;
+    if (chart != null && chartBounds != null) {
+      applyNewValuesWithAnimation();
+    }
+  }
+
+  /**
+   * Enable or disable level of detail reduction of graphs.
+   * When enabled pathes contain about two points per pixel with spikes kept,
+   * so cost of drawing is proportional to view width rather than to count of values.
+   *
+   * @param enabled true to reduce graphs before drawing.
+   */
+  public void setDecimationEnabled(final boolean enabled) {
+    decimationEnabled = enabled;
+    if (chart != null && chartBounds != null) {
+      prepareDrawBar();
+      prepareDrawDynamic();
+      invalidateLayers();
+    }
+  }
+
+  /**
+   * Choose renderer of graphs on chart. Vertex renderer fills preallocated buffers with line segments
+   * and draws them with Canvas.drawLines(), segments are joined by round caps. Path renderer, the default one,
+   * draws stroked pathes with proper joins. Bar is drawn by pathes to its cached bitmap in both cases.
+   *
+   * @param enabled true to draw graphs with Canvas.drawLines().
+   */
+  public void setVertexRendererEnabled(final boolean enabled) {
+    vertexRendererEnabled = enabled;
+    if (chartPaints != null) {
+      for (Paint paint : chartPaints) {
+        paint.setStrokeCap(enabled ? Paint.Cap.ROUND : Paint.Cap.BUTT);
+      }
+    }
+    if (chart != null && chartBounds != null) {
+      prepareDrawDynamic();
+      invalidateLayers();
+    }
+  }
+
+  /**
+   * Draw view somewhere else than in window, see ChartTextureView.
+   *
+   * @param listener called when view should be drawn again, null to invalidate view itself.
+   */
+  void setInvalidateListener(final Runnable listener) {
+    invalidateListener = listener;
+  }
+
+  /**
+   * Redraw view with plot layer drawn again.
+   */
+  private void invalidateLayers() {
+    plotDirty = true;
+    invalidateOverlay();
+  }
+
+  /**
+   * Redraw view with cached layers, only overlay with value box is drawn again.
+   */
+  private void invalidateOverlay() {
+    if (invalidateListener != null) {
+      invalidateListener.run();
+    } else {
       invalidate();
     }
   }
 
   /**
-   * Set chart graphs.
+   * @return frame time metrics of this view, read and reset them on the thread which draws it.
+   */
+  public FrameMetrics getFrameMetrics() {
+    return frameMetrics;
+  }
+
+  /**
+   * Show or hide summary of frame time metrics over chart.
+   *
+   * @param enabled true to draw metrics on every frame.
+   */
+  public void setMetricsOverlayEnabled(final boolean enabled) {
+    if (metricsOverlayEnabled == enabled) {
+      return;
+    }
+    metricsOverlayEnabled = enabled;
+    invalidateLayers();
+  }
+
+  /**
+   * Choose renderer of numeric and date labels. Glyph renderer composes labels of glyphs pre-rasterized
+   * into atlas for every text size, so no text layout is done per frame, but kerning isn't applied.
+   * Graph names are always drawn by Canvas.drawText().
+   *
+   * @param enabled true to draw labels from glyph atlases.
+   */
+  public void setGlyphLabelsEnabled(final boolean enabled) {
+    glyphLabelsEnabled = enabled;
+    if (enabled && timesAtlas == null) {
+      String symbols = dateFormatter.symbols() + "-";
+      timesAtlas = new GlyphAtlas(timesPaint, symbols);
+      Paint paint = new Paint(valuePaint);
+      paint.setTextSize(density * 11);
+      valueAtlas = new GlyphAtlas(paint, symbols);
+      paint.setTextSize(density * 9);
+      valueDateAtlas = new GlyphAtlas(paint, symbols);
+    } else if (!enabled) {
+      recycleAtlases();
+    }
+    invalidateLayers();
+  }
+
+  private void recycleAtlases() {
+    if (timesAtlas != null) {
+      timesAtlas.recycle();
+      valueAtlas.recycle();
+      valueDateAtlas.recycle();
+      timesAtlas = null;
+      valueAtlas = null;
+      valueDateAtlas = null;
+    }
+  }
+
+  /**
+   * Draw label with glyph atlas when it's enabled.
+   */
+  private void drawLabelText(final Canvas canvas, final GlyphAtlas atlas, final char[] text, final int length,
+                             final float x, final float y, final Paint paint) {
+    if (glyphLabelsEnabled) {
+      atlas.draw(canvas, text, 0, length, x, y, paint);
+    } else {
+      canvas.drawText(text, 0, length, x, y, paint);
+    }
+  }
+
+  /**
+   * Measure label with glyph atlas when it's enabled.
+   */
+  private float measureLabelText(final GlyphAtlas atlas, final char[] text, final int length, final Paint paint) {
+    return glyphLabelsEnabled ? atlas.measure(text, 0, length, paint) : paint.measureText(text, 0, length);
+  }
+
+  /**
+   * Keep selection on the newest values of live chart while selection is at the end,
+   * user can still move selection back to look at older values.
+   *
+   * @param pinned true to move selection with appended values.
+   */
+  public void setPinnedToNewest(final boolean pinned) {
+    pinnedToNewest = pinned;
+  }
+
+  /**
+   * Update view after values were appended to its chart with ChartData.append().
+   * Cheap enough to be called on every append: only selection is moved here,
+   * pathes are extended once per frame.
+   */
+  public void onChartAppended() {
+    if (chart == null) {
+      return;
+    }
+    int dropped = (int) (chart.firstIndex - shownFirstIndex);
+    double start = windowStart();
+    if (pinnedToNewest && selectionEnd == shownValuesCount - 1) {
+      start = chart.valuesCount - 1 - windowWidth;
+    } else if (dropped > 0) {
+      // keep selection on the same values until they are dropped
+      start -= dropped;
+    }
+    setWindow(start, windowWidth);
+    shownFirstIndex = chart.firstIndex;
+    shownValuesCount = chart.valuesCount;
+    if (chartBounds != null) {
+      appendPending = true;
+      invalidateLayers();
+    }
+  }
+
+  /**
+   * Apply values appended since the last frame. Pathes are extended by new values when possible,
+   * otherwise they are rebuilt.
+   */
+  private void applyAppended() {
+    appendPending = false;
+    barXstep = (barBounds.right - barBounds.left) / (chart.valuesCount - 1);
+    selectionMinWidth = Math.max(barXstep * 2.1f, selectionBorderWidth * 2.1f);
+    onGraphsDisplayedChanged();
+
+    // bar pathes are rebuilt when bucket size grows or half of them are dropped values
+    GraphPath barPath = barPathes[0];
+    if (barPath.bucketSize() == barBucketSize() && chart.firstIndex - barPath.origin() < chart.valuesCount / 2) {
+      extendPathes(barPathes, chart.valuesCount - 1);
+      barTransformDirty = true;
+      barDirty = true;
+    } else {
+      prepareDrawBar();
+    }
+
+    onSelectionChanged();
+    updateChartGeometry();
+    startAnimation();
+  }
+
+  /**
+   * Make chart geometry cover selection with the current bucket size. Geometry built around selection
+   * is reused as is, pathes are extended when selection moves forward by panning or appended values,
+   * otherwise geometry is rebuilt with new margins.
+   */
+  private void updateChartGeometry() {
+    long start = chart.firstIndex + selectionStart;
+    long end = chart.firstIndex + selectionEnd;
+    if (chartBucketSize() != requestedBucketSize || start < requestedFirstIndex || !hasChartGeometry()) {
+      rebuildChartGeometry();
+    } else if (end > requestedLastIndex) {
+      // values behind selection are only clipped, so pathes are rebuilt when they get too long
+      if (vertexRendererEnabled || !isGeometryPublished()
+          || start - requestedFirstIndex > selectionEnd - selectionStart) {
+        rebuildChartGeometry();
+      } else {
+        int to = Math.min(selectionEnd + geometryMargin(), chart.valuesCount - 1);
+        extendPathes(chartPathes, to);
+        requestedLastIndex = chart.firstIndex + to;
+        chartPoints.to = to;
+        chartTransformDirty = true;
+      }
+    }
+  }
+
+  /**
+   * Build chart geometry in background when it's possible, otherwise on this thread.
+   * Points or pathes of charts which aren't live or stacked are built by geometryWorker,
+   * stacked geometry is built on redraw. Current geometry is drawn until new one is published.
+   */
+  private void rebuildChartGeometry() {
+    if (!canBuildInBackground()) {
+      prepareDrawDynamic();
+      return;
+    }
+    int margin = geometryMargin();
+    int from = Math.max(0, selectionStart - margin);
+    int to = Math.min(selectionEnd + margin, chart.valuesCount - 1);
+    for (int i = 0; i < chart.graphsCount; i++) {
+      geometryGraphs[i] = displayedGraphs[i] || graphsAlpha[i] > INVISIBLE;
+    }
+    requestedFirstIndex = chart.firstIndex + from;
+    requestedLastIndex = chart.firstIndex + to;
+    requestedBucketSize = chartBucketSize();
+    geometryWorker.request(chart, geometryGraphs, from, to, requestedBucketSize, !vertexRendererEnabled);
+  }
+
+  /**
+   * @return true if geometry may be built by workers, live and stacked charts change on this thread.
+   */
+  private boolean canBuildInBackground() {
+    return backgroundGeometryEnabled && chart.stacks == null && !(chart.store instanceof RingStore);
+  }
+
+  /**
+   * @return true if chartPoints cover the latest request, so they may be extended.
+   */
+  private boolean isGeometryPublished() {
+    return chartPoints.from == requestedFirstIndex - chart.firstIndex
+        && chartPoints.to == requestedLastIndex - chart.firstIndex
+        && chartPoints.bucketSize == requestedBucketSize;
+  }
+
+  /**
+   * Draw geometry built on this thread only, so a frame drawn right after binding has all graphs.
+   *
+   * @param enabled false to build geometry on this thread.
+   */
+  void setBackgroundGeometryEnabled(final boolean enabled) {
+    backgroundGeometryEnabled = enabled;
+  }
+
+  /**
+   * Swap in points or pathes built by geometryWorker.
+   */
+  private final GeometryWorker.Listener geometryListener = new GeometryWorker.Listener() {
+    @Override
+    public void onPointsPublished(final GeometryWorker.Buffer points, final long buildNs) {
+      chartPoints = points;
+      chartPathes = points.pathes;
+      chartTransformDirty = true;
+      frameMetrics.recordPrepare(buildNs);
+      invalidateLayers();
+    }
+  };
+
+  /**
+   * @return true if geometry of every displayed graph is built or requested, graphs which were hidden aren't built.
+   */
+  private boolean hasChartGeometry() {
+    if (chart.stacks != null) {
+      return true; // stacked geometry is built on every redraw
+    }
+    for (int i = 0; i < chart.graphsCount; i++) {
+      if (displayedGraphs[i] && !geometryGraphs[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return count of values built on both sides of selection.
+   */
+  private int geometryMargin() {
+    return (selectionEnd - selectionStart) / 4;
+  }
+
+  /**
+   * @return index of visible window start, it may be fractional.
+   */
+  private double windowStart() {
+    return selectionStart + startOffset;
+  }
+
+  /**
+   * Set visible window, it's clamped to chart values.
+   *
+   * @param start index of window start, may be fractional.
+   * @param width width of window in indices, not less than 1.
+   */
+  private void setWindow(final double start, final double width) {
+    int last = chart.valuesCount - 1;
+    windowWidth = (float) Math.max(1, Math.min(width, last));
+    double clamped = Math.max(0, Math.min(start, last - windowWidth));
+    selectionStart = (int) clamped;
+    startOffset = (float) (clamped - selectionStart);
+    selectionEnd = Math.min((int) Math.ceil(clamped + windowWidth), last);
+  }
+
+  /**
+   * @param pathes pathes to extend, empty ones are skipped.
+   * @param to     new last index.
+   */
+  private void extendPathes(final GraphPath[] pathes, final int to) {
+    for (int i = 0; i < chart.graphsCount; i++) {
+      GraphPath path = pathes[i];
+      if (!path.isEmpty() && path.end() < chart.firstIndex + to) {
+        ensureDecimationCapacity((int) Math.max(0, path.end() - chart.firstIndex - path.bucketSize()), to,
+            path.bucketSize());
+        path.extend(chart, i, to, decimatedIndices, decimatedValues);
+      }
+    }
+  }
+
+  /**
+   * Set chart graphs. Until it's called view shows loading placeholder.
    *
    * @param data ChartData object.
    */
   public void setChartData(ChartData data) {
+    setChartData(data, null);
+  }
+
+  /**
+   * Set chart graphs and restore user changes made when chart was shown last time.
+   *
+   * @param data  ChartData object.
+   * @param state state of chart, it's updated by the view until it's recycled, may be null.
+   */
+  public void setChartData(final ChartData data, final State state) {
+    if (data == chart && state == this.state) {
+      return; // already bound
+    }
+    long startTime = StartupMetrics.begin(StartupMetrics.PHASE_BIND);
     chart = data;
-    selectionStart = chart.valuesCount - 31;
-    selectionEnd = chart.valuesCount - 1;
-    displayedGraphs = new boolean[chart.graphsCount];
-    graphsAlpha = new int[chart.graphsCount];
-    for (int i = 0; i < chart.graphsCount; i++) {
-      displayedGraphs[i] = true;
-      graphsAlpha[i] = VISIBLE;
+    startupIndex = state != null ? state.index : StartupMetrics.LAUNCH;
+    firstDrawPending = true;
+    this.state = state;
+    if (displayedGraphs == null || displayedGraphs.length < chart.graphsCount) {
+      displayedGraphs = new boolean[chart.graphsCount];
+      graphsAlpha = new int[chart.graphsCount];
+      graphScales = new float[chart.graphsCount];
+      newGraphScales = new float[chart.graphsCount];
+      graphScaleSpeeds = new float[chart.graphsCount];
+    }
+    if (state != null && state.displayedGraphs != null) {
+      setWindow(state.windowStart, state.windowWidth);
+      System.arraycopy(state.displayedGraphs, 0, displayedGraphs, 0, chart.graphsCount);
+    } else {
+      setWindow(chart.valuesCount - 31, 30);
+      for (int i = 0; i < chart.graphsCount; i++) {
+        displayedGraphs[i] = true;
+      }
     }
-    // read dates
-    dates = new String[chart.valuesCount];
-    for (int j = 0; j < chart.valuesCount; j++) {
-      dates[j] = timelineDateFormat.format(new Date(chart.timeline[j]));
+    for (int i = 0; i < chart.graphsCount; i++) {
+      graphsAlpha[i] = displayedGraphs[i] ? VISIBLE : INVISIBLE;
+      graphScales[i] = 1;
+      newGraphScales[i] = 1;
     }
+    shownFirstIndex = chart.firstIndex;
+    shownValuesCount = chart.valuesCount;
+    appendPending = false;
+    timelineLabels.setChart(chart);
+    valueBoxLabels.setChart(chart);
     onGraphsDisplayedChanged();
+    StartupMetrics.end(startupIndex, StartupMetrics.PHASE_BIND, startTime);
+    if (chartBounds != null) {
+      prepareChart();
+    }
+    requestLayout(); // height depends on count of graphs
+    invalidateLayers();
   }
 
   /**
-   * Recalculates global maximum and minimum.
+   * Recalculates global maximum of displayed graphs, bar is rescaled to it with animation.
+   * Sums of stacked chart are updated for toggled graphs only.
    */
   private void onGraphsDisplayedChanged() {
-    barMax = Integer.MIN_VALUE;
-    for (int i = 0; i < chart.graphsCount; i++) {
-      if (graphsAlpha[i] > INVISIBLE && chart.maximums[i] > barMax) {
-        barMax = chart.maximums[i];
+    int max = Integer.MIN_VALUE;
+    if (chart.stacks != null) {
+      for (int i = 0; i < chart.graphsCount; i++) {
+        chart.stacks.setShown(i, displayedGraphs[i]);
+      }
+      max = chart.percentage ? 100 : chart.stacks.totalMax(0, chart.valuesCount);
+    } else {
+      for (int i = 0; i < chart.graphsCount; i++) {
+        if (displayedGraphs[i]) {
+          max = Math.max(max, chart.rangeMax(i, 0, chart.valuesCount));
+        }
       }
     }
+    if (max > 0) {
+      barMax = max; // keep previous scale when nothing is displayed
+    }
+    barMaxSpeed = Math.abs(barMax - currentBarMax) / SCALE_DURATION_MS;
   }
 
   @Override
   protected void onSizeChanged(final int w, final int h, final int oldw, final int oldh) {
     super.onSizeChanged(w, h, oldw, oldh);
     if (w != oldw || h != oldh) {
+      long startTime = StartupMetrics.begin(StartupMetrics.PHASE_SIZE);
+      recycleBitmaps();
       chartBounds = new RectF(paddingX, 0, w - paddingX, chartHeight);
 
       barBounds = new RectF(paddingX, chartBounds.bottom + density * 33,
           w - paddingX, chartBounds.bottom + density * 33 + barHeight);
-      barXstep = (barBounds.right - barBounds.left) / (chart.valuesCount - 1);
-
-      selectionMinWidth = Math.max(barXstep * 2.1f, selectionBorderWidth * 2.1f);
 
       timelineY = chartBounds.bottom + density * 16;
       timelinePath = new Path();
@@ -316,55 +1080,67 @@ public class ChartView extends View {
       timelinePath.addRect(chartBounds.right, timelineY - density * 10, w, timelineY + density * 5, Path.Direction.CW);
 
       // calculate optimal dates count on timeline
-      float dateWidth = timesPaint.measureText(timelineDateFormat.format(new Date(1550793600000L))); // width of Dec 22
+      char[] date = new char[DateFormatter.MAX_LENGTH];
+      float dateWidth = timesPaint.measureText(date, 0, dateFormatter.formatDate(1550793600000L, date)); // width of Dec 22
       optimalDatesCount = (int) (chartBounds.width() / (dateWidth * 2));
+      StartupMetrics.end(chart != null ? startupIndex : StartupMetrics.LAUNCH, StartupMetrics.PHASE_SIZE, startTime);
+
+      if (chart != null) {
+        prepareChart();
+      }
+    }
+  }
+
+  /**
+   * Prepare drawing of chart, should be done when both size and chart data are known.
+   */
+  private void prepareChart() {
+    long startTime = StartupMetrics.begin(StartupMetrics.PHASE_PREPARE);
+    barXstep = (barBounds.right - barBounds.left) / (chart.valuesCount - 1);
+    selectionMinWidth = Math.max(barXstep * 2.1f, selectionBorderWidth * 2.1f);
 
+    if (valuesWidthes == null || valuesWidthes.length < chart.graphsCount) {
       valuesWidthes = new float[chart.graphsCount];
+      valuesChars = new char[chart.graphsCount][IntFormatter.MAX_LENGTH];
+      valuesLengths = new int[chart.graphsCount];
       namesWidthes = new float[chart.graphsCount];
-      namesWidthes[0] = valuePaint.measureText(chart.names[0]);
       checkboxesY = new float[chart.graphsCount];
-      checkboxesY[0] = barBounds.bottom + density * 24; // first checkbox position.
-      for (int i = 1; i < chart.graphsCount; i++) {
-        checkboxesY[i] = checkboxesY[i - 1] + checkBoxSize + density * 32;
-        namesWidthes[i] = valuePaint.measureText(chart.names[i]);
-      }
-
-      scaleStep = barMax > 0 ? 0.2f * chartHeight / barMax : 1;
-      onSelectionChanged();
-      currentScaleY = newScaleY;
-      prepareDrawStatic();
-      prepareDrawDynamic();
     }
+    namesWidthes[0] = valuePaint.measureText(chart.names[0]);
+    checkboxesY[0] = barBounds.bottom + density * 24; // first checkbox position.
+    for (int i = 1; i < chart.graphsCount; i++) {
+      checkboxesY[i] = checkboxesY[i - 1] + checkBoxSize + density * 32;
+      namesWidthes[i] = valuePaint.measureText(chart.names[i]);
+    }
+
+    currentBarMax = barMax;
+    labelsDirty = true;
+    onSelectionChanged();
+    currentScaleY = newScaleY;
+    currentMinY = newMinY;
+    prepareDrawStatic();
+    rebuildChartGeometry();
+    StartupMetrics.end(startupIndex, StartupMetrics.PHASE_PREPARE, startTime);
   }
 
   /**
    * Calculate x coordinate on a bar for i-position.
    *
-   * @param i position in graph data array.
+   * @param i position in graph data array, may be fractional.
    * @return x coordinate.
    */
-  private float barX(final int i) {
-    return barBounds.left + i * barXstep;
+  private float barX(final double i) {
+    return (float) (barBounds.left + i * barXstep);
   }
 
   /**
-   * Calculate i-position in the graph data array by x coordinate.
+   * Calculate fractional i-position in the graph data array by x coordinate on bar.
    *
    * @param x coordinate.
-   * @return position in the graph data array.
-   */
-  private int barI(final float x) {
-    return Math.max(0, Math.min(Math.round((x - barBounds.left) / barXstep), chart.valuesCount - 1));
-  }
-
-  /**
-   * Calculate y coordinate on a bar for graph value.
-   *
-   * @param value graph value.
-   * @return y coordinate.
+   * @return position in the graph data array, it isn't clamped.
    */
-  private float barY(final int value) {
-    return barBounds.bottom - value * barGraphHeight / barMax;
+  private double barI(final float x) {
+    return (double) (x - barBounds.left) / barXstep;
   }
 
   /**
@@ -375,52 +1151,183 @@ public class ChartView extends View {
     zeroLinePath.moveTo(chartBounds.left, chartBounds.bottom);
     zeroLinePath.lineTo(chartBounds.right, chartBounds.bottom);
 
-    barPathes = new Path[chart.graphsCount];
-    barPaints = new Paint[chart.graphsCount];
-    chartPaints = new Paint[chart.graphsCount];
-    for (int i = 0; i < chart.graphsCount; i++) {
-      barPathes[i] = new Path();
-      barPathes[i].moveTo(barX(0), barY(chart.graphs[i][0]));
-      for (int j = 0; j < chart.valuesCount; j++) {
-        barPathes[i].lineTo(barX(j), barY(chart.graphs[i][j]));
+    // pathes and paints are kept when view is recycled for another chart
+    if (barPathes == null || barPathes.length < chart.graphsCount) {
+      barDrawPathes = new Path[chart.graphsCount];
+      barPaints = new Paint[chart.graphsCount];
+      chartDrawPathes = new Path[chart.graphsCount];
+      chartPaints = new Paint[chart.graphsCount];
+      if (geometryWorker != null) {
+        geometryWorker.cancel(); // its buffers are too small, running tasks finish with them
+        barWorker.cancel();
       }
-
-      barPaints[i] = new Paint(Paint.ANTI_ALIAS_FLAG);
+      geometryWorker = new GeometryWorker(chart.graphsCount, geometryListener);
+      chartPoints = geometryWorker.front();
+      chartPathes = chartPoints.pathes;
+      geometryGraphs = new boolean[chart.graphsCount];
+      barWorker = new GeometryWorker(chart.graphsCount, barListener);
+      barPathes = barWorker.front().pathes;
+      barGraphs = new boolean[chart.graphsCount];
+      Arrays.fill(barGraphs, true);
+      chartVertices = new float[chart.graphsCount][0];
+      chartVerticesCounts = new int[chart.graphsCount];
+      for (int i = 0; i < chart.graphsCount; i++) {
+        barDrawPathes[i] = new Path();
+        chartDrawPathes[i] = new Path();
+        barPaints[i] = new Paint(Paint.ANTI_ALIAS_FLAG);
+        barPaints[i].setStyle(Paint.Style.STROKE);
+        barPaints[i].setStrokeWidth(barLineWeight);
+
+        chartPaints[i] = new Paint(Paint.ANTI_ALIAS_FLAG);
+        chartPaints[i].setStyle(Paint.Style.STROKE);
+        chartPaints[i].setStrokeWidth(chartLineWeight);
+        chartPaints[i].setStrokeCap(vertexRendererEnabled ? Paint.Cap.ROUND : Paint.Cap.BUTT);
+      }
+    }
+    // stacked graphs are filled
+    Paint.Style style = chart.stacks != null ? Paint.Style.FILL : Paint.Style.STROKE;
+    for (int i = 0; i < chart.graphsCount; i++) {
       barPaints[i].setColor(chart.colors[i]);
-      barPaints[i].setStyle(Paint.Style.STROKE);
-      barPaints[i].setStrokeWidth(barLineWeight);
-
-      chartPaints[i] = new Paint(Paint.ANTI_ALIAS_FLAG);
+      barPaints[i].setStyle(style);
       chartPaints[i].setColor(chart.colors[i]);
-      chartPaints[i].setStyle(Paint.Style.STROKE);
-      chartPaints[i].setStrokeWidth(chartLineWeight);
       chartPaints[i].setAlpha(graphsAlpha[i]);
+      chartPaints[i].setStyle(style);
     }
+    prepareDrawBar();
   }
 
-  private void onSelectionChanged() {
-    oldChartMax = chartMax;
-    chartXstep = (chartBounds.right - chartBounds.left) / (selectionEnd - selectionStart);
-    selectionStartX = barX(selectionStart);
-    selectionEndX = barX(selectionEnd);
+  /**
+   * Build bar pathes, should be done on bar size change. They are built by barWorker when it's possible,
+   * the current ones are drawn until new ones are published.
+   * Scale changes don't need it, they are applied by barMatrix.
+   */
+  private void prepareDrawBar() {
+    int bucketSize = barBucketSize();
+    if (canBuildInBackground()) {
+      barWorker.request(chart, barGraphs, 0, chart.valuesCount - 1, bucketSize, true);
+      return;
+    }
+    barWorker.cancel();
+    barPathes = barWorker.front().pathes;
+    ensureDecimationCapacity(0, chart.valuesCount - 1, bucketSize);
+    for (int i = 0; i < chart.graphsCount; i++) {
+      barPathes[i].reset();
+      if (chart.stacks == null) {
+        barPathes[i].build(chart, i, 0, chart.valuesCount - 1, bucketSize, decimatedIndices, decimatedValues);
+      }
+    }
+    barTransformDirty = true;
+    barDirty = true;
+  }
 
-    buildSelectionPathes();
+  /**
+   * Swap in bar pathes built by barWorker.
+   */
+  private final GeometryWorker.Listener barListener = new GeometryWorker.Listener() {
+    @Override
+    public void onPointsPublished(final GeometryWorker.Buffer points, final long buildNs) {
+      barPathes = points.pathes;
+      barTransformDirty = true;
+      barDirty = true;
+      invalidateLayers();
+    }
+  };
+
+  private int barBucketSize() {
+    return decimationEnabled ? Decimator.bucketSize(chart.valuesCount, barBounds.width()) : 1;
+  }
 
-    if (selectionStart == 0 && selectionEnd == chart.valuesCount) { // selected all region
-      chartMax = barMax;
-      newScaleY = chartMax != 0 ? chartHeight / chartMax : currentScaleY;
+  /**
+   * Map bar pathes from data space to view space with current scale.
+   */
+  private void transformBarPathes() {
+    if (chart.stacks != null) {
+      buildStackPathes(barDrawPathes, 0, chart.valuesCount - 1, barBucketSize(), barBounds.left, barXstep,
+          barBounds.bottom, barGraphHeight / currentBarMax);
+      barTransformDirty = false;
       return;
     }
+    for (int i = 0; i < chart.graphsCount; i++) {
+      // every graph of y_scaled chart fills bar height
+      barMatrix.setScale(barXstep, -barGraphHeight / (chart.yScaled ? Math.max(1, chart.maximums[i]) : currentBarMax));
+      barMatrix.preTranslate(barPathes[i].origin() - chart.firstIndex, 0);
+      barMatrix.postTranslate(barBounds.left, barBounds.bottom);
+      barPathes[i].transform(barMatrix, barDrawPathes[i]);
+    }
+    barTransformDirty = false;
+  }
 
-    chartMax = Integer.MIN_VALUE;
+  /**
+   * Draw bar graphs to cached bitmap.
+   */
+  private void drawBarBitmap() {
+    if (barBitmap == null) {
+      // bitmap covers half of line weight out of bar bounds
+      barBitmapLeft = barBounds.left - barLineWeight;
+      barBitmapTop = barBounds.top - barLineWeight;
+      barBitmap = Bitmap.createBitmap((int) Math.ceil(barBounds.width() + 2 * barLineWeight),
+          (int) Math.ceil(barBounds.height() + 2 * barLineWeight), Bitmap.Config.ARGB_8888);
+      barCanvas = new Canvas(barBitmap);
+    }
+    if (barTransformDirty || chart.stacks != null) {
+      transformBarPathes(); // stacked geometry depends on alpha of fading graphs
+    }
+    barBitmap.eraseColor(Color.TRANSPARENT);
+    barCanvas.save();
+    barCanvas.translate(-barBitmapLeft, -barBitmapTop);
+    // values dropped from live chart stay in pathes until they are rebuilt
+    barCanvas.clipRect(barBounds.left, barBitmapTop, barBounds.right, barBounds.bottom + barLineWeight);
     for (int i = 0; i < chart.graphsCount; i++) {
-      if (displayedGraphs[i]) {
-        for (int j = selectionStart; j < selectionEnd; j++) {
-          if (chart.graphs[i][j] > chartMax) chartMax = chart.graphs[i][j];
-        }
+      if (graphsAlpha[i] > INVISIBLE) {
+        barPaints[i].setAlpha(chart.stacks != null ? VISIBLE : graphsAlpha[i]);
+        barCanvas.drawPath(barDrawPathes[i], barPaints[i]);
+      }
+    }
+    barCanvas.restore();
+    barDirty = false;
+  }
+
+  private void onSelectionChanged() {
+    oldChartMax = chartMax;
+    oldChartMin = chartMin;
+    chartXstep = (chartBounds.right - chartBounds.left) / windowWidth;
+    selectionStartX = barX(windowStart());
+    selectionEndX = barX(windowStart() + windowWidth);
+
+    buildSelectionPathes();
+
+    int max = Integer.MIN_VALUE;
+    int min = Integer.MAX_VALUE;
+    for (int i = 0; i < chart.graphsCount; i++) {
+      if (!displayedGraphs[i]) {
+        continue;
+      }
+      if (chart.stacks != null) {
+        max = chart.percentage ? 100 : chart.stacks.totalMax(selectionStart, selectionEnd + 1);
+        min = 0;
+        break;
+      }
+      int graphMax = chart.rangeMax(i, selectionStart, selectionEnd + 1);
+      if (chart.yScaled && max != Integer.MIN_VALUE) {
+        // graph of y_scaled chart is scaled to the first displayed graph
+        newGraphScales[i] = max > 0 && graphMax > 0 ? (float) max / graphMax : 1;
+        graphScaleSpeeds[i] = Math.abs(newGraphScales[i] - graphScales[i]) / SCALE_DURATION_MS;
+        continue;
       }
+      max = Math.max(max, graphMax);
+      min = Math.min(min, chart.rangeMin(i, selectionStart, selectionEnd + 1));
+      newGraphScales[i] = 1;
+      graphScaleSpeeds[i] = Math.abs(1 - graphScales[i]) / SCALE_DURATION_MS;
     }
-    newScaleY = chartMax != 0 ? chartHeight / chartMax : currentScaleY;
+    if (max < min) {
+      return; // nothing is displayed, keep current scale
+    }
+    chartMax = max;
+    chartMin = fitMinimum && chart.stacks == null && !chart.yScaled ? min : 0;
+    newScaleY = chartMax != chartMin ? chartHeight / (chartMax - chartMin) : currentScaleY;
+    newMinY = chartMin;
+    scaleSpeed = Math.abs(newScaleY - currentScaleY) / SCALE_DURATION_MS;
+    minSpeed = Math.abs(newMinY - currentMinY) / SCALE_DURATION_MS;
   }
 
   /**
@@ -428,18 +1335,18 @@ public class ChartView extends View {
    */
   private void buildSelectionPathes() {
     selectionPath.reset();
-    selectionPath.addRect(new RectF(selectionStartX, barBounds.top,
-        selectionStartX + selectionBorderWidth, barBounds.bottom), Path.Direction.CW);
-    selectionPath.addRect(new RectF(selectionStartX + selectionBorderWidth, barBounds.top,
-        selectionEndX - selectionBorderWidth, barBounds.top + selectionBorderHeight), Path.Direction.CW);
-    selectionPath.addRect(new RectF(selectionEndX - selectionBorderWidth, barBounds.top,
-        selectionEndX, barBounds.bottom), Path.Direction.CW);
-    selectionPath.addRect(new RectF(selectionStartX + selectionBorderWidth, barBounds.bottom - selectionBorderHeight,
-        selectionEndX - selectionBorderWidth, barBounds.bottom), Path.Direction.CW);
+    selectionPath.addRect(selectionStartX, barBounds.top,
+        selectionStartX + selectionBorderWidth, barBounds.bottom, Path.Direction.CW);
+    selectionPath.addRect(selectionStartX + selectionBorderWidth, barBounds.top,
+        selectionEndX - selectionBorderWidth, barBounds.top + selectionBorderHeight, Path.Direction.CW);
+    selectionPath.addRect(selectionEndX - selectionBorderWidth, barBounds.top,
+        selectionEndX, barBounds.bottom, Path.Direction.CW);
+    selectionPath.addRect(selectionStartX + selectionBorderWidth, barBounds.bottom - selectionBorderHeight,
+        selectionEndX - selectionBorderWidth, barBounds.bottom, Path.Direction.CW);
     // Path for selection frame out space
     nonSelectionPath.reset();
-    nonSelectionPath.addRect(new RectF(barBounds.left, barBounds.top, selectionStartX, barBounds.bottom), Path.Direction.CW);
-    nonSelectionPath.addRect(new RectF(selectionEndX, barBounds.top, barBounds.right, barBounds.bottom), Path.Direction.CW);
+    nonSelectionPath.addRect(barBounds.left, barBounds.top, selectionStartX, barBounds.bottom, Path.Direction.CW);
+    nonSelectionPath.addRect(selectionEndX, barBounds.top, barBounds.right, barBounds.bottom, Path.Direction.CW);
   }
 
   /**
@@ -449,7 +1356,7 @@ public class ChartView extends View {
    * @return x coordinate.
    */
   private float chartX(final int i) {
-    return chartBounds.left + (i - selectionStart) * chartXstep;
+    return chartBounds.left + (i - selectionStart - startOffset) * chartXstep;
   }
 
   /**
@@ -459,7 +1366,10 @@ public class ChartView extends View {
    * @return position in the graph data array.
    */
   private int chartI(final float x) {
-    return Math.max(selectionStart, Math.min(Math.round((x - chartBounds.left) / chartXstep) + selectionStart, selectionEnd));
+    int i = Math.round((x - chartBounds.left) / chartXstep + startOffset) + selectionStart;
+    int first = startOffset > 0 ? selectionStart + 1 : selectionStart;
+    int last = (int) (windowStart() + windowWidth);
+    return Math.max(first, Math.min(i, last));
   }
 
   /**
@@ -468,31 +1378,202 @@ public class ChartView extends View {
    * @param value graph value.
    * @return y coordinate.
    */
-  private float chartY(final int value) {
-    return chartBounds.bottom - value * currentScaleY;
+  private float chartY(final float value) {
+    return chartBounds.bottom - (value - currentMinY) * currentScaleY;
   }
 
   /**
-   * Perform operations which should be done on every change.
+   * Build chart geometry of selection with margins, see updateChartGeometry().
+   * Scale changes don't need it, they are applied by chartMatrix.
    */
   private void prepareDrawDynamic() {
-    chartPathes = new Path[chart.graphsCount];
+    long startTime = System.nanoTime();
+    int bucketSize = chartBucketSize();
+    int margin = geometryMargin();
+    int from = Math.max(0, selectionStart - margin);
+    int to = Math.min(selectionEnd + margin, chart.valuesCount - 1);
+    ensureDecimationCapacity(from, to, bucketSize);
+    geometryWorker.cancel(); // geometry built here replaces one being built in background
+    chartPoints = geometryWorker.front();
+    chartPathes = chartPoints.pathes;
+    chartPoints.from = from;
+    chartPoints.to = to;
+    chartPoints.bucketSize = bucketSize;
+    for (int i = 0; i < chart.graphsCount; i++) {
+      chartPathes[i].reset();
+      chartPoints.counts[i] = 0;
+      geometryGraphs[i] = false;
+      if (chart.stacks != null || (!displayedGraphs[i] && graphsAlpha[i] == INVISIBLE)) {
+        continue; // hidden graph, it will be built when displayed again, stacked graphs are built on redraw
+      }
+      geometryGraphs[i] = true;
+      if (vertexRendererEnabled) {
+        chartPoints.reduce(chart, i, from, to, bucketSize);
+      } else {
+        chartPathes[i].build(chart, i, from, to, bucketSize, decimatedIndices, decimatedValues);
+      }
+    }
+    requestedFirstIndex = chart.firstIndex + from;
+    requestedLastIndex = chart.firstIndex + to;
+    requestedBucketSize = bucketSize;
+    chartTransformDirty = true;
+    frameMetrics.recordPrepare(System.nanoTime() - startTime);
+  }
+
+  /**
+   * Fill vertex buffers with line segments in view space with current scale.
+   * Coordinates math of chartX() and chartY() is hoisted out of the loop.
+   */
+  private void fillChartVertices() {
+    float stepX = chartXstep;
+    float scaleY = currentScaleY;
+    float left = chartBounds.left - (selectionStart + startOffset) * stepX;
+    float bottom = chartBounds.bottom + currentMinY * scaleY;
+    for (int i = 0; i < chart.graphsCount; i++) {
+      if (chartVertices[i].length < 4 * chartPoints.indices[i].length) {
+        chartVertices[i] = new float[4 * chartPoints.indices[i].length];
+      }
+      chartVerticesCounts[i] = LineVertices.fill(chartPoints.indices[i], chartPoints.values[i], chartPoints.counts[i],
+          left, stepX, bottom, scaleY * graphScales[i], chartVertices[i]);
+    }
+    onChartTransformed();
+  }
+
+  /**
+   * Remember visible window of chart geometry in view space.
+   */
+  private void onChartTransformed() {
+    transformedSelectionStart = selectionStart;
+    transformedStartOffset = startOffset;
+    transformedXstep = chartXstep;
+    chartTransformDirty = false;
+  }
+
+  /**
+   * @return horizontal shift of chart geometry from its transformed window to visible window.
+   */
+  private float chartPanX() {
+    return ((transformedSelectionStart - selectionStart) + (transformedStartOffset - startOffset)) * chartXstep;
+  }
+
+  private int chartBucketSize() {
+    return decimationEnabled ? Decimator.bucketSize(selectionEnd - selectionStart + 1, chartBounds.width()) : 1;
+  }
+
+  /**
+   * Map chart pathes from data space to view space with current scale.
+   * Path geometry is transformed instead of canvas, so stroke width isn't scaled.
+   */
+  private void transformChartPathes() {
     for (int i = 0; i < chart.graphsCount; i++) {
-      chartPathes[i] = new Path();
-      chartPathes[i].moveTo(chartX(selectionStart), chartY(chart.graphs[i][selectionStart]));
-      for (int j = selectionStart; j <= selectionEnd; j++) {
-        chartPathes[i].lineTo(chartX(j), chartY(chart.graphs[i][j]));
+      if (!chartPathes[i].isEmpty()) {
+        chartMatrix.setScale(chartXstep, -currentScaleY * graphScales[i]);
+        chartMatrix.preTranslate(chartPathes[i].origin() - chart.firstIndex - selectionStart - startOffset, 0);
+        chartMatrix.postTranslate(chartBounds.left, chartBounds.bottom + currentMinY * currentScaleY);
+        chartPathes[i].transform(chartMatrix, chartDrawPathes[i]);
       }
     }
+    onChartTransformed();
   }
 
-  private long lastDrawTimeNs = 0;
+  /**
+   * Grow decimatedIndices and decimatedValues to fit reduced range.
+   *
+   * @param from       first index, inclusive.
+   * @param to         last index, inclusive.
+   * @param bucketSize values in one bucket, 1 keeps all values.
+   */
+  private void ensureDecimationCapacity(final int from, final int to, final int bucketSize) {
+    int capacity = Decimator.capacity(from, to, bucketSize);
+    if (decimatedIndices.length < capacity) {
+      decimatedIndices = new int[capacity];
+      decimatedValues = new int[capacity];
+    }
+  }
 
   @Override
   protected void onDraw(Canvas canvas) {
     long drawStartTime = System.nanoTime();
     super.onDraw(canvas);
     canvas.drawColor(backgroundColor);
+    if (chart == null) {
+      float textWidth = namesPaint.measureText(placeholderMessage);
+      canvas.drawText(placeholderMessage, chartBounds.centerX() - textWidth / 2, chartBounds.centerY(), namesPaint);
+      return;
+    }
+    long firstDrawTime = firstDrawPending ? StartupMetrics.begin(StartupMetrics.PHASE_FIRST_DRAW) : 0;
+    if (appendPending) {
+      applyAppended();
+    }
+    // layers are cached, touches on chart change only overlay drawn over them
+    if (isPlotMoving()) {
+      drawPlot(canvas);
+      plotDirty = true; // cache is stale
+    } else {
+      if (plotDirty) {
+        drawPlotBitmap();
+      }
+      canvas.drawBitmap(plotBitmap, 0, 0, null);
+    }
+    if (labelsDirty) {
+      drawLabelsBitmap();
+    }
+    canvas.drawBitmap(labelsBitmap, 0, labelsTop, null);
+
+    if (barDirty) {
+      drawBarBitmap();
+    }
+    canvas.drawBitmap(barBitmap, barBitmapLeft, barBitmapTop, null);
+    canvas.drawPath(selectionPath, selectionPaint);
+    canvas.drawPath(nonSelectionPath, nonSelectionPaint);
+
+    if (chartTouchMode) {
+      drawValueBox(canvas);
+    }
+
+    frameMetrics.recordDraw(System.nanoTime() - drawStartTime);
+    if (firstDrawPending) {
+      firstDrawPending = false;
+      StartupMetrics.end(startupIndex, StartupMetrics.PHASE_FIRST_DRAW, firstDrawTime);
+    }
+    if (metricsOverlayEnabled) {
+      drawMetrics(canvas);
+    }
+  }
+
+  /**
+   * @return true if plot changes every frame, so it isn't cached.
+   */
+  private boolean isPlotMoving() {
+    return animationScheduled || selectionMoveMode || selectionChangeLeftMode || selectionChangeRightMode;
+  }
+
+  /**
+   * @return height of plot from the top of view to the bottom of dates.
+   */
+  private int plotHeight() {
+    return (int) Math.ceil(timelineY + density * 5);
+  }
+
+  /**
+   * Draw levels, graphs and dates to cached bitmap.
+   */
+  private void drawPlotBitmap() {
+    if (plotBitmap == null) {
+      plotBitmap = Bitmap.createBitmap(getWidth(), plotHeight(), Bitmap.Config.ARGB_8888);
+      plotCanvas = new Canvas(plotBitmap);
+    }
+    plotBitmap.eraseColor(backgroundColor);
+    drawPlot(plotCanvas);
+    plotDirty = false;
+  }
+
+  /**
+   * Draw levels, graphs and dates over background.
+   *
+   * @param canvas canvas of view or of cached bitmap.
+   */
+  private void drawPlot(final Canvas canvas) {
     canvas.drawPath(zeroLinePath, zeroLinePaint);
 
     int displayedGraphsCount = 0;
@@ -502,68 +1583,250 @@ public class ChartView extends View {
       }
     }
 
+    // panning only moves geometry, it's transformed again on zoom and scale change
+    if (chart.stacks != null) {
+      // stacked geometry depends on alpha of fading graphs, it's built from sums of visible values
+      buildStackPathes(chartDrawPathes, Math.max(0, selectionStart - 1),
+          Math.min(selectionEnd + 1, chart.valuesCount - 1), chartBucketSize(),
+          chartBounds.left - (selectionStart + startOffset) * chartXstep, chartXstep,
+          chartBounds.bottom + currentMinY * currentScaleY, currentScaleY);
+      onChartTransformed();
+    } else if (chartTransformDirty || chartXstep != transformedXstep) {
+      if (vertexRendererEnabled) {
+        fillChartVertices();
+      } else {
+        transformChartPathes();
+      }
+    }
+
     if (displayedGraphsCount > 0) {
       // draw levels
       int alpha = Math.round(VISIBLE - VISIBLE * Math.abs(newScaleY - currentScaleY) / newScaleY);
       int paddingTop = Math.round(density * 19 / currentScaleY);
-      drawLevels(canvas, chartMax - paddingTop, alpha);
+      drawLevels(canvas, chartMin, chartMax - paddingTop, alpha);
       if (currentScaleY != newScaleY) {
-        drawLevels(canvas, oldChartMax, VISIBLE - alpha);
+        drawLevels(canvas, oldChartMin, oldChartMax, VISIBLE - alpha);
       }
 
+      // extended pathes of live chart may start before selection
+      canvas.save();
+      canvas.clipRect(chartBounds.left, 0, chartBounds.right, plotHeight());
+      canvas.translate(chartPanX(), 0);
       for (int i = 0; i < chart.graphsCount; i++) {
         if (graphsAlpha[i] > INVISIBLE) {
-          chartPaints[i].setAlpha(graphsAlpha[i]);
-          canvas.drawPath(chartPathes[i], chartPaints[i]);
-          canvas.drawPath(barPathes[i], barPaints[i]);
+          chartPaints[i].setAlpha(chart.stacks != null ? VISIBLE : graphsAlpha[i]);
+          if (vertexRendererEnabled && chart.stacks == null) {
+            canvas.drawLines(chartVertices[i], 0, chartVerticesCounts[i], chartPaints[i]);
+          } else {
+            canvas.drawPath(chartDrawPathes[i], chartPaints[i]);
+          }
         }
-        drawLabel(canvas, i);
       }
+      canvas.restore();
     } else {
       // no data for out
       float textWidth = namesPaint.measureText(NO_DATA_MESSAGE);
       canvas.drawText(NO_DATA_MESSAGE, chartBounds.centerX() - textWidth / 2, chartBounds.centerY(), namesPaint);
-      for (int i = 0; i < chart.graphsCount; i++) {
-        drawLabel(canvas, i);
-      }
     }
 
     // draw dates
     drawDates(canvas);
+  }
 
-    canvas.drawPath(selectionPath, selectionPaint);
-    canvas.drawPath(nonSelectionPath, nonSelectionPaint);
+  /**
+   * Build filled pathes of stacked graphs in view space from precomputed sums. Values are sampled
+   * with step, bars are drawn at sampled indices and areas also end at the last index.
+   * Graph fading in or out is scaled by its alpha, so only its values are read besides sums.
+   *
+   * @param pathes output pathes.
+   * @param from   first index, inclusive.
+   * @param to     last index, inclusive.
+   * @param step   distance between sampled indices.
+   * @param left   x of index 0.
+   * @param xStep  distance between neighbour values.
+   * @param bottom y of zero value.
+   * @param scaleY pixels per value, per percent for percentage chart.
+   */
+  private void buildStackPathes(final Path[] pathes, final int from, final int to, final int step,
+                                final float left, final float xStep, final float bottom, final float scaleY) {
+    Stacks stacks = chart.stacks;
+    boolean bars = chart.type == ChartData.CHART_BAR;
+    int first = from - from % step;
+    int capacity = (to - first) / step + 2;
+    if (stackIndices.length < capacity) {
+      stackIndices = new int[capacity];
+      stackBottoms = new float[capacity];
+      stackTops = new float[capacity];
+      stackCorrections = new float[capacity];
+      stackTotals = new float[capacity];
+    }
+    int count = 0;
+    for (int j = first; j <= to; j += step) {
+      stackIndices[count++] = j;
+    }
+    if (!bars && stackIndices[count - 1] != to) {
+      stackIndices[count++] = to;
+    }
+    for (int p = 0; p < count; p++) {
+      stackBottoms[p] = bottom;
+      stackCorrections[p] = 0;
+      stackTotals[p] = stacks.total(stackIndices[p]);
+    }
+    if (chart.percentage) {
+      for (int i = 0; i < chart.graphsCount; i++) {
+        float fade = (float) graphsAlpha[i] / VISIBLE - (stacks.isShown(i) ? 1 : 0);
+        for (int p = 0; fade != 0 && p < count; p++) {
+          stackTotals[p] += fade * chart.value(i, stackIndices[p]);
+        }
+      }
+    }
 
-    if (chartTouchMode) {
-      drawValueBox(canvas);
+    float half = bars ? step * xStep / 2 : 0;
+    for (int i = 0; i < chart.graphsCount; i++) {
+      float fade = (float) graphsAlpha[i] / VISIBLE - (stacks.isShown(i) ? 1 : 0);
+      for (int p = 0; p < count; p++) {
+        int j = stackIndices[p];
+        if (fade != 0) {
+          stackCorrections[p] += fade * chart.value(i, j);
+        }
+        float value = stacks.sum(i, j) + stackCorrections[p];
+        if (chart.percentage) {
+          value = stackTotals[p] > 0 ? value * 100 / stackTotals[p] : 0;
+        }
+        stackTops[p] = bottom - value * scaleY;
+      }
+
+      Path path = pathes[i];
+      path.reset();
+      if (graphsAlpha[i] > INVISIBLE) {
+        path.moveTo(left + stackIndices[0] * xStep - half, stackTops[0]);
+        for (int p = 0; p < count; p++) {
+          float x = left + stackIndices[p] * xStep;
+          if (bars) {
+            path.lineTo(x - half, stackTops[p]);
+          }
+          path.lineTo(x + half, stackTops[p]);
+        }
+        for (int p = count - 1; p >= 0; p--) {
+          float x = left + stackIndices[p] * xStep;
+          path.lineTo(x + half, stackBottoms[p]);
+          if (bars) {
+            path.lineTo(x - half, stackBottoms[p]);
+          }
+        }
+        path.close();
+      }
+      float[] tops = stackTops;
+      stackTops = stackBottoms;
+      stackBottoms = tops;
     }
+  }
+
+  /**
+   * Draw checkboxes and graph names to cached bitmap.
+   */
+  private void drawLabelsBitmap() {
+    if (labelsBitmap == null) {
+      labelsTop = barBounds.bottom;
+      labelsBitmap = Bitmap.createBitmap(getWidth(), Math.max(1, (int) Math.ceil(getHeight() - labelsTop)),
+          Bitmap.Config.ARGB_8888);
+      labelsCanvas = new Canvas(labelsBitmap);
+    }
+    labelsBitmap.eraseColor(backgroundColor);
+    labelsCanvas.save();
+    labelsCanvas.translate(0, -labelsTop);
+    for (int i = 0; i < chart.graphsCount; i++) {
+      drawLabel(labelsCanvas, i);
+    }
+    labelsCanvas.restore();
+    labelsDirty = false;
+  }
 
-    lastDrawTimeNs = System.nanoTime() - drawStartTime;
-//    if (lastDrawTimeNs > animationIntervalMs * 1_000_000) {
-//      Log.e("ChartView", "onDraw() overrun: " + (float) lastDrawTimeNs / 1_000_000);
-//    } else {
-//      Log.e("ChartView", "onDraw() finished: " + (float) lastDrawTimeNs / 1_000_000);
-//    }
+  /**
+   * Draw summary of frame time metrics and startup phases of chart in the top left corner of chart,
+   * its own cost isn't recorded.
+   *
+   * @param canvas canvas.
+   */
+  private void drawMetrics(final Canvas canvas) {
+    float lineHeight = metricsPaint.getTextSize() * 1.2f;
+    float x = chartBounds.left;
+    float y = lineHeight;
+    int length = FrameMetrics.summary("draw", frameMetrics.draw(), metricsChars);
+    canvas.drawText(metricsChars, 0, length, x, y, metricsPaint);
+    length = FrameMetrics.summary("prepare", frameMetrics.prepare(), metricsChars);
+    canvas.drawText(metricsChars, 0, length, x, y + lineHeight, metricsPaint);
+    length = FrameMetrics.summary("tick late", frameMetrics.tickLateness(), metricsChars);
+    canvas.drawText(metricsChars, 0, length, x, y + 2 * lineHeight, metricsPaint);
+    length = IntFormatter.format(frameMetrics.skippedFrames(), metricsChars);
+    canvas.drawText(metricsChars, 0, length, x, y + 3 * lineHeight, metricsPaint);
+    canvas.drawText(" skipped frames", x + metricsPaint.measureText(metricsChars, 0, length), y + 3 * lineHeight,
+        metricsPaint);
+    length = StartupMetrics.summary(startupIndex, metricsChars);
+    canvas.drawText(metricsChars, 0, length, x, y + 4 * lineHeight, metricsPaint);
+    if (chart != null && chart.store instanceof PackedStore) {
+      length = ((PackedStore) chart.store).sizeSummary(metricsChars);
+      canvas.drawText(metricsChars, 0, length, x, y + 5 * lineHeight, metricsPaint);
+    }
   }
 
   /**
    * Draw levels and lines.
    *
    * @param canvas canvas.
+   * @param min    min value (bottom line).
    * @param max    max value (top line).
    * @param alpha  opacity 0..255.
    */
-  private void drawLevels(final Canvas canvas, final int max, final int alpha) {
+  private void drawLevels(final Canvas canvas, final int min, final int max, final int alpha) {
     levelsPaint.setAlpha(alpha);
     timesPaint.setAlpha(alpha);
+    int rightGraph = rightAxisGraph();
     float l;
     float y;
     for (int i = 0; i < LEVELS_COUNT; i++) {
-      l = max - (float) (i * max) / LEVELS_COUNT;
-      y = chartBounds.bottom - l * currentScaleY;
+      l = max - (float) i * (max - min) / LEVELS_COUNT;
+      y = chartY(l);
       canvas.drawLine(chartBounds.left, y, chartBounds.right, y, levelsPaint);
-      canvas.drawText(String.valueOf(Math.round(l)), chartBounds.left, y - density * 5, timesPaint);
+      drawLabelText(canvas, timesAtlas, levelChars, IntFormatter.format(Math.round(l), levelChars),
+          chartBounds.left, y - density * 5, timesPaint);
+      if (rightGraph >= 0) {
+        // right axis is signed in units of its graph with its color
+        int color = timesPaint.getColor();
+        timesPaint.setColor(chart.colors[rightGraph]);
+        timesPaint.setAlpha(alpha * graphsAlpha[rightGraph] / VISIBLE);
+        int length = IntFormatter.format(Math.round(l / graphScales[rightGraph]), levelChars);
+        drawLabelText(canvas, timesAtlas, levelChars, length,
+            chartBounds.right - measureLabelText(timesAtlas, levelChars, length, timesPaint), y - density * 5,
+            timesPaint);
+        timesPaint.setColor(color);
+        timesPaint.setAlpha(alpha);
+      }
+    }
+    if (min != 0) {
+      // bottom line is zero line, sign it only when it's not zero
+      drawLabelText(canvas, timesAtlas, levelChars, IntFormatter.format(min, levelChars),
+          chartBounds.left, chartY(min) - density * 5, timesPaint);
+    }
+  }
+
+  /**
+   * @return index of the second displayed graph of y_scaled chart or -1, it's signed on the right axis.
+   */
+  private int rightAxisGraph() {
+    if (!chart.yScaled) {
+      return -1;
+    }
+    boolean first = true;
+    for (int i = 0; i < chart.graphsCount; i++) {
+      if (displayedGraphs[i]) {
+        if (!first) {
+          return i;
+        }
+        first = false;
+      }
     }
+    return -1;
   }
 
   /**
@@ -572,17 +1835,23 @@ public class ChartView extends View {
    * @param canvas canvas.
    */
   private void drawDates(final Canvas canvas) {
-    int selectionSize = selectionEnd - selectionStart;
-    int stepPower = (int) (Math.log((double) (selectionSize) / optimalDatesCount) / Math.log(2));
-    stepPower = Math.max(1, stepPower);
-    int step = (int) Math.pow(2, stepPower);
-    int start = Math.max(0, (selectionStart / step) * step - step);
-    int end = Math.min((selectionEnd / step) * step + step, (chart.valuesCount / step) * step);
+    float selectionSize = windowWidth;
+    int step = DateSteps.step((int) selectionSize, optimalDatesCount);
+    // dates are aligned to absolute indices, so they don't jump when live chart drops its oldest values
+    long first = chart.firstIndex;
+    int start = (int) (((first + selectionStart) / step) * step - step - first);
+    while (start < 0) {
+      start += step;
+    }
+    int end = (int) (Math.min(((first + selectionEnd) / step) * step + step,
+        ((first + chart.valuesCount) / step) * step) - first);
 
     int alpha = (int) (VISIBLE * (1 - (float) (selectionSize - step * optimalDatesCount) / (step * optimalDatesCount)));
     for (int i = start; i < end; i += step) {
-      timesPaint.setAlpha(i % (step * 2) == 0 ? VISIBLE : alpha);
-      canvas.drawText(dates[i], chartX(i), timelineY, timesPaint);
+      timesPaint.setAlpha((first + i) % (step * 2) == 0 ? VISIBLE : alpha);
+      int label = timelineLabels.label(i);
+      drawLabelText(canvas, timesAtlas, timelineLabels.chars[label], timelineLabels.lengths[label], chartX(i),
+          timelineY, timesPaint);
     }
 
     canvas.drawPath(timelinePath, backgroundPaint); // clip outsides
@@ -618,9 +1887,8 @@ public class ChartView extends View {
    */
   private void drawCheckbox(final Canvas canvas, final float y, final float filledWhite, final int color) {
     checkboxPaint.setColor(color);
-    canvas.drawRoundRect(new RectF(paddingX, y,
-            paddingX + checkBoxSize, y + checkBoxSize),
-        checkBoxSize / 10, checkBoxSize / 10, checkboxPaint);
+    checkboxRect.set(paddingX, y, paddingX + checkBoxSize, y + checkBoxSize);
+    canvas.drawRoundRect(checkboxRect, checkBoxSize / 10, checkBoxSize / 10, checkboxPaint);
     checkboxPaint.setColor(0xffffffff);
     canvas.drawLine(paddingX + density * 3, y + density * 9.33f,
         paddingX + density * 7, y + density * 14.33f, checkboxPaint);
@@ -631,9 +1899,8 @@ public class ChartView extends View {
       checkboxPaint.setColor(backgroundColor);
       float w = checkBoxSize - filledWhite * (checkBoxSize - density * 2);
       if (2 * w < checkBoxSize) {
-        canvas.drawRoundRect(new RectF(paddingX + w, y + w,
-                paddingX + checkBoxSize - w, y + checkBoxSize - w),
-            (checkBoxSize - 2 * w) / 10, (checkBoxSize - 2 * w) / 10, checkboxPaint);
+        checkboxRect.set(paddingX + w, y + w, paddingX + checkBoxSize - w, y + checkBoxSize - w);
+        canvas.drawRoundRect(checkboxRect, (checkBoxSize - 2 * w) / 10, (checkBoxSize - 2 * w) / 10, checkboxPaint);
       }
     }
   }
@@ -646,7 +1913,7 @@ public class ChartView extends View {
   private void drawValueBox(final Canvas canvas) {
     float x = chartX(chartCurrentIndex);
     // need to know width of box
-    String date = valueboxDateFormat.format(new Date(chart.timeline[chartCurrentIndex]));
+    int date = valueBoxLabels.label(chartCurrentIndex);
     float p = density * 11.66f; // left padding
     float w = p; // start from left padding
     int valuesCount = 0;
@@ -654,8 +1921,8 @@ public class ChartView extends View {
     for (int i = 0; i < chart.graphsCount; i++) {
       if (displayedGraphs[i]) {
         valuesCount++;
-        valuesWidthes[i] = Math.max(0,
-            valuePaint.measureText(String.valueOf(chart.graphs[i][chartCurrentIndex])));
+        valuesLengths[i] = IntFormatter.format(chart.value(i, chartCurrentIndex), valuesChars[i]);
+        valuesWidthes[i] = Math.max(0, measureLabelText(valueAtlas, valuesChars[i], valuesLengths[i], valuePaint));
         w += valuesWidthes[i];
       }
     }
@@ -665,7 +1932,8 @@ public class ChartView extends View {
     }
     // add margins and right padding
     w += (valuesCount - 1) * density * 10 + density * 12.66f;
-    w = Math.max(w, valuePaint.measureText(date) + density * 12.66f);
+    w = Math.max(w, measureLabelText(valueAtlas, valueBoxLabels.chars[date], valueBoxLabels.lengths[date], valuePaint)
+        + density * 12.66f);
 
     float h = density * 62;
     canvas.drawLine(x, h, x, chartBounds.bottom, valueLinePaint);
@@ -673,29 +1941,32 @@ public class ChartView extends View {
     valuePaint.setTextSize(density * 11);
 
     for (int i = 0; i < chart.graphsCount; i++) {
-      if (graphsAlpha[i] > INVISIBLE) {
-        float y = chartY(chart.graphs[i][chartCurrentIndex]);
+      // stacked graphs are marked by value line only
+      if (graphsAlpha[i] > INVISIBLE && chart.stacks == null) {
+        float y = chartY(chart.value(i, chartCurrentIndex) * graphScales[i]);
         canvas.drawCircle(x, y, valueRadius, valueCirclePaint);
         canvas.drawCircle(x, y, valueRadius, chartPaints[i]);
       }
     }
 
     float left = Math.min(x - paddingX + 6, chartBounds.right + paddingX - w - 6);
-    canvas.drawRoundRect(new RectF(left, 0, left + w, h), density * 5, density * 5, valueBoxPaint);
+    valueBoxRect.set(left, 0, left + w, h);
+    canvas.drawRoundRect(valueBoxRect, density * 5, density * 5, valueBoxPaint);
     if (!isNightMode) {
-      canvas.drawRoundRect(new RectF(left, 0, left + w, h), density * 5, density * 5, valueBoxBorderPaint);
+      canvas.drawRoundRect(valueBoxRect, density * 5, density * 5, valueBoxBorderPaint);
     }
 
     left += p;
     valuePaint.setTextSize(density * 9);
     valuePaint.setColor(textColor);
-    canvas.drawText(date, left, density * 17, valuePaint);
+    drawLabelText(canvas, valueDateAtlas, valueBoxLabels.chars[date], valueBoxLabels.lengths[date], left,
+        density * 17, valuePaint);
 
     for (int i = 0; i < chart.graphsCount; i++) {
       if (displayedGraphs[i]) {
         valuePaint.setColor(chart.colors[i]);
         valuePaint.setTextSize(density * 11);
-        canvas.drawText(String.valueOf(chart.graphs[i][chartCurrentIndex]), left, density * 41, valuePaint);
+        drawLabelText(canvas, valueAtlas, valuesChars[i], valuesLengths[i], left, density * 41, valuePaint);
         valuePaint.setTextSize(density * 8);
         canvas.drawText(chart.names[i], left, density * 54, valuePaint);
         left += valuesWidthes[i] + density * 10;
@@ -706,6 +1977,9 @@ public class ChartView extends View {
   @SuppressLint("ClickableViewAccessibility")
   @Override
   public boolean onTouchEvent(final MotionEvent event) {
+    if (chart == null) {
+      return super.onTouchEvent(event);
+    }
     float touchEventX = event.getX();
     float touchEventY = event.getY();
     switch (event.getAction()) {
@@ -714,7 +1988,7 @@ public class ChartView extends View {
           // this is touch on chart region
           chartTouchMode = true;
           chartCurrentIndex = chartI(touchEventX);
-          invalidate();
+          invalidateOverlay();
           return true;
 
         } else if (touchEventY >= barBounds.top && touchEventY <= barBounds.bottom) {
@@ -758,36 +2032,35 @@ public class ChartView extends View {
             getParent().requestDisallowInterceptTouchEvent(true);
           }
           chartCurrentIndex = chartI(touchEventX);
-          invalidate();
+          invalidateOverlay();
 
         } else if (selectionMoveMode) {
           float delta = touchEventX - selectionMoveX;
-          if (Math.abs(delta) < barXstep) {
+          if (delta == 0) {
             return true;
           }
 
           if (getParent() != null) {
             getParent().requestDisallowInterceptTouchEvent(true);
           }
-          if (selectionStartX + delta > barBounds.left && selectionEndX + delta < barBounds.right) {
-            selectionStart = barI(selectionStartX + delta);
-            selectionEnd = barI(selectionEndX + delta);
-            applyNewValuesWithAnimation();
-          }
+          // window moves by fractional indices with the same width, so chart geometry is only translated
+          setWindow(windowStart() + delta / barXstep, windowWidth);
+          applyNewValuesWithAnimation();
           selectionMoveX = touchEventX;
 
         } else if (selectionChangeLeftMode && touchEventX < selectionEndX - selectionMinWidth) {
           if (getParent() != null) {
             getParent().requestDisallowInterceptTouchEvent(true);
           }
-          selectionStart = barI(touchEventX);
+          double start = Math.max(0, barI(touchEventX));
+          setWindow(start, windowStart() + windowWidth - start);
           applyNewValuesWithAnimation();
 
         } else if (selectionChangeRightMode && touchEventX > selectionStartX + selectionMinWidth) {
           if (getParent() != null) {
             getParent().requestDisallowInterceptTouchEvent(true);
           }
-          selectionEnd = barI(touchEventX);
+          setWindow(windowStart(), Math.min(barI(touchEventX), chart.valuesCount - 1) - windowStart());
           applyNewValuesWithAnimation();
         }
 
@@ -801,6 +2074,7 @@ public class ChartView extends View {
         selectionMoveMode = false;
         if (checkBoxTouchMode && event.getAction() == MotionEvent.ACTION_UP) {
           displayedGraphs[checkBoxTouchedIndex] = !displayedGraphs[checkBoxTouchedIndex];
+          onGraphsDisplayedChanged();
         }
         checkBoxTouchMode = false;
         applyNewValuesWithAnimation();
@@ -810,68 +2084,146 @@ public class ChartView extends View {
     }
   }
 
+  /**
+   * Move visible window the same way dragging of selection does, used by render tests.
+   *
+   * @param start index of window start, may be fractional.
+   * @param width width of window in indices.
+   */
+  void dragWindow(final double start, final double width) {
+    setWindow(start, width);
+    applyNewValuesWithAnimation();
+  }
+
   private void applyNewValuesWithAnimation() {
     onSelectionChanged();
-    prepareDrawDynamic();
-    invalidate();
-    handler.removeCallbacksAndMessages(null);
-    handler.postDelayed(alphaChangeRunnable, Math.max(0, Math.round(animationIntervalMs - (float) lastDrawTimeNs / 1_000_000)));
+    updateChartGeometry();
+    invalidateLayers();
+    startAnimation();
   }
 
   /**
-   * Animation interval.
+   * Schedule animation frame if it isn't scheduled yet, so all changes of one frame share one callback.
    */
-  private int animationIntervalMs = 4;
+  private void startAnimation() {
+    if (!animationScheduled) {
+      animationScheduled = true;
+      lastFrameTimeNs = System.nanoTime();
+      lastTickTimeNs = 0;
+      Choreographer.getInstance().postFrameCallback(animationFrameCallback);
+    }
+  }
+
   /**
-   * Handler for animation run.
+   * Move value to target by speed during elapsed time.
+   *
+   * @param current current value.
+   * @param target  target value.
+   * @param delta   max change during elapsed time.
+   * @return new value.
    */
-  private Handler handler = new Handler();
+  private static float approach(final float current, final float target, final float delta) {
+    return current < target ? Math.min(current + delta, target) : Math.max(current - delta, target);
+  }
+
   /**
-   * Alpha animation runnable.
+   * Save user changes to state and release chart geometry, called when view is scrolled away and
+   * will be reused for another chart. Cached layers are released, pathes and paints are kept to be reused.
    */
-  private Runnable alphaChangeRunnable = new Runnable() {
-    @Override
-    public void run() {
-      boolean repeat = false;
-      for (int i = 0; i < chart.graphsCount; i++) {
-        if (displayedGraphs[i] && graphsAlpha[i] != VISIBLE) {
-          graphsAlpha[i] = Math.min(graphsAlpha[i] + 10, VISIBLE);
-          repeat = true;
-        } else if (!displayedGraphs[i] && graphsAlpha[i] != INVISIBLE) {
-          graphsAlpha[i] = Math.max(graphsAlpha[i] - 10, INVISIBLE);
-          repeat = true;
-        }
-      }
-
-      if (currentScaleY < newScaleY) {
-        currentScaleY = Math.min(currentScaleY + scaleStep, newScaleY);
-        prepareDrawDynamic();
-        repeat = true;
-      } else if (currentScaleY > newScaleY) {
-        currentScaleY = Math.max(currentScaleY - scaleStep, newScaleY);
-        prepareDrawDynamic();
-        repeat = true;
-      }
+  public void recycle() {
+    Choreographer.getInstance().removeFrameCallback(animationFrameCallback);
+    animationScheduled = false;
+    if (chart == null) {
+      return;
+    }
+    if (geometryWorker != null) {
+      geometryWorker.cancel();
+      barWorker.cancel();
+    }
+    if (state != null) {
+      state.windowStart = windowStart();
+      state.windowWidth = windowWidth;
+      state.displayedGraphs = new boolean[chart.graphsCount];
+      System.arraycopy(displayedGraphs, 0, state.displayedGraphs, 0, chart.graphsCount);
+    }
+    for (int i = 0; i < barPathes.length; i++) {
+      barPathes[i].reset();
+      barDrawPathes[i].reset();
+      chartPathes[i].reset();
+      chartDrawPathes[i].reset();
+    }
+    requestedBucketSize = 0;
+    chartTouchMode = false;
+    selectionMoveMode = false;
+    selectionChangeLeftMode = false;
+    selectionChangeRightMode = false;
+    checkBoxTouchMode = false;
+    chart = null;
+    state = null;
+    recycleBitmaps();
+    requestLayout();
+    invalidateLayers();
+  }
 
-      invalidate();
-      if (repeat) {
-        handler.postDelayed(this, Math.max(0, Math.round(animationIntervalMs - (float) lastDrawTimeNs / 1_000_000)));
-      }
+  /**
+   * Stop animation and release cached layers, called by ChartTextureView when its render thread stops.
+   * Chart stays bound, layers are created again on the next draw and geometry is built on the next thread.
+   */
+  void onDrawThreadStopped() {
+    Choreographer.getInstance().removeFrameCallback(animationFrameCallback);
+    animationScheduled = false;
+    if (geometryWorker != null) {
+      geometryWorker.cancel();
+      barWorker.cancel();
     }
-  };
+    recycleBitmaps();
+  }
 
   /**
    * Called on MainActivity.onDestroy()
    */
   public void onDestroy() {
-    handler.removeCallbacksAndMessages(null);
+    Choreographer.getInstance().removeFrameCallback(animationFrameCallback);
+    animationScheduled = false;
+    recycleBitmaps();
+    recycleAtlases();
+  }
+
+  /**
+   * Release cached layers, they are created again on the next draw.
+   */
+  private void recycleBitmaps() {
+    if (barBitmap != null) {
+      barBitmap.recycle();
+      barBitmap = null;
+    }
+    if (plotBitmap != null) {
+      plotBitmap.recycle();
+      plotBitmap = null;
+    }
+    if (labelsBitmap != null) {
+      labelsBitmap.recycle();
+      labelsBitmap = null;
+    }
+    barDirty = true;
+    plotDirty = true;
+    labelsDirty = true;
   }
 
   @Override
   protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
     int width = MeasureSpec.getSize(widthMeasureSpec);
+    setMeasuredDimension(width, measureHeight(density, chart != null ? chart.graphsCount : 0));
+  }
+
+  /**
+   * @param density     display density.
+   * @param graphsCount count of graphs of chart, 0 while chart is loading.
+   * @return height of view showing chart.
+   */
+  static int measureHeight(final float density, final int graphsCount) {
     float height = density * 350 // height of region from top to bar bottom
-        + density * 50 * chart.graphsCount;
-    setMeasuredDimension(width, (int) height);
+        + density * 50 * (graphsCount > 0 ? graphsCount : PLACEHOLDER_GRAPHS_COUNT);
+    return (int) height;
   }
 }
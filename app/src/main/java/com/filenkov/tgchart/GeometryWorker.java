@@ -0,0 +1,290 @@
+package com.filenkov.tgchart;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reduces graphs to points of vertex renderer or builds their pathes on a small worker pool,
+ * every graph is built by its own task. Geometry is written to back buffer and published to the view thread
+ * when all graphs are done, view thread only swaps front and back buffers. A running build always finishes
+ * and is published, requests made meanwhile replace each other, so only the latest one is built next.
+ * Only cancel() makes running build stale, its tasks are skipped and it isn't published.
+ * Charts with columns on heap, packed or paged are built here: heap arrays are immutable and stores are
+ * synchronized. Live and stacked charts change on the view thread, so their geometry is built there.
+ */
+class GeometryWorker {
+  private static final int POOL_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+  private static final ExecutorService pool = Executors.newFixedThreadPool(POOL_SIZE, new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+          runnable.run();
+        }
+      }, "Geometry" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  /**
+   * Reduced points or pathes of every graph.
+   */
+  static class Buffer {
+    final int[][] indices;
+    final int[][] values;
+    final int[] counts;
+    /**
+     * Pathes of path renderer, reduced points are only their decimation buffers then.
+     */
+    final GraphPath[] pathes;
+    /**
+     * Range of build which filled buffer.
+     */
+    int from;
+    int to;
+    int bucketSize;
+
+    Buffer(final int graphsCount) {
+      indices = new int[graphsCount][0];
+      values = new int[graphsCount][0];
+      counts = new int[graphsCount];
+      pathes = new GraphPath[graphsCount];
+      for (int i = 0; i < graphsCount; i++) {
+        pathes[i] = new GraphPath();
+      }
+    }
+
+    /**
+     * Reduce range of graph to points, first and last values are always kept.
+     *
+     * @param chart      chart.
+     * @param graph      index of graph.
+     * @param from       first index, inclusive.
+     * @param to         last index, inclusive.
+     * @param bucketSize values in one bucket, 1 keeps all values.
+     */
+    void reduce(final ChartData chart, final int graph, final int from, final int to, final int bucketSize) {
+      ensureCapacity(graph, from, to, bucketSize);
+      int[] graphIndices = indices[graph];
+      int[] graphValues = values[graph];
+      graphIndices[0] = from;
+      graphValues[0] = chart.value(graph, from);
+      int count = chart.buckets(graph, from + 1, to - 1, bucketSize, graphIndices, graphValues, 1);
+      graphIndices[count] = to;
+      graphValues[count++] = chart.value(graph, to);
+      counts[graph] = count;
+    }
+
+    /**
+     * Build path of graph range, see GraphPath.build().
+     *
+     * @param chart      chart.
+     * @param graph      index of graph.
+     * @param from       first index, inclusive.
+     * @param to         last index, inclusive.
+     * @param bucketSize values in one bucket, 1 keeps all values.
+     */
+    void buildPath(final ChartData chart, final int graph, final int from, final int to, final int bucketSize) {
+      ensureCapacity(graph, from, to, bucketSize);
+      pathes[graph].build(chart, graph, from, to, bucketSize, indices[graph], values[graph]);
+      counts[graph] = 0;
+    }
+
+    private void ensureCapacity(final int graph, final int from, final int to, final int bucketSize) {
+      int capacity = Decimator.capacity(from, to, bucketSize);
+      if (indices[graph].length < capacity) {
+        indices[graph] = new int[capacity];
+        values[graph] = new int[capacity];
+      }
+    }
+  }
+
+  /**
+   * Receives published points on view thread.
+   */
+  interface Listener {
+    /**
+     * @param points  new front buffer.
+     * @param buildNs duration of build from its start to the end of the last task.
+     */
+    void onPointsPublished(Buffer points, long buildNs);
+  }
+
+  private final Listener listener;
+  private Handler handler;
+  private Buffer front;
+  private Buffer back;
+  /**
+   * Generation changed by cancel(), tasks of older generations are skipped.
+   */
+  private final AtomicInteger latest = new AtomicInteger();
+
+  // request waiting for the running build, view thread
+  private boolean building = false;
+  private boolean hasPending = false;
+  private ChartData pendingChart;
+  private final boolean[] pendingGraphs;
+  private int pendingFrom;
+  private int pendingTo;
+  private int pendingBucketSize;
+  private boolean pendingPathes;
+
+  /**
+   * @param graphsCount max count of graphs.
+   * @param listener    listener called on thread which makes requests, the thread may change when
+   *                    the view is drawn by a new render thread.
+   */
+  GeometryWorker(final int graphsCount, final Listener listener) {
+    this.listener = listener;
+    front = new Buffer(graphsCount);
+    back = new Buffer(graphsCount);
+    pendingGraphs = new boolean[graphsCount];
+  }
+
+  /**
+   * @return buffer read by the view, it may also be filled by the view synchronously after cancel().
+   */
+  Buffer front() {
+    return front;
+  }
+
+  /**
+   * Build geometry of graphs in background. If a build is running, the request waits for it
+   * and replaces request which isn't started yet.
+   *
+   * @param chart      chart which isn't live or stacked.
+   * @param graphs     true for graphs to build, others get no geometry.
+   * @param from       first index, inclusive.
+   * @param to         last index, inclusive.
+   * @param bucketSize values in one bucket.
+   * @param pathes     true to build pathes, false to reduce graphs to points.
+   */
+  void request(final ChartData chart, final boolean[] graphs, final int from, final int to, final int bucketSize,
+               final boolean pathes) {
+    if (handler == null || handler.getLooper() != Looper.myLooper()) {
+      if (building) {
+        // publication of running build is lost with looper of stopped thread, its tasks keep old back buffer
+        latest.incrementAndGet();
+        back = new Buffer(pendingGraphs.length);
+        building = false;
+      }
+      handler = new Handler(Looper.myLooper());
+    }
+    hasPending = true;
+    pendingChart = chart;
+    System.arraycopy(graphs, 0, pendingGraphs, 0, chart.graphsCount);
+    pendingFrom = from;
+    pendingTo = to;
+    pendingBucketSize = bucketSize;
+    pendingPathes = pathes;
+    if (!building) {
+      startPending();
+    }
+  }
+
+  /**
+   * Drop running and pending requests, nothing is published until the next request.
+   */
+  void cancel() {
+    latest.incrementAndGet();
+    hasPending = false;
+    pendingChart = null;
+  }
+
+  private void startPending() {
+    hasPending = false;
+    building = true;
+    final Build build = new Build(latest.get(), back);
+    final ChartData chart = pendingChart;
+    final int from = pendingFrom;
+    final int to = pendingTo;
+    final int bucketSize = pendingBucketSize;
+    final boolean pathes = pendingPathes;
+    back.from = from;
+    back.to = to;
+    back.bucketSize = bucketSize;
+
+    int tasksCount = 0;
+    for (int i = 0; i < chart.graphsCount; i++) {
+      back.counts[i] = 0;
+      back.pathes[i].reset();
+      if (pendingGraphs[i]) {
+        tasksCount++;
+      }
+    }
+    build.remaining.set(tasksCount);
+    if (tasksCount == 0) {
+      handler.post(build);
+      return;
+    }
+    for (int i = 0; i < chart.graphsCount; i++) {
+      if (!pendingGraphs[i]) {
+        continue;
+      }
+      final int graph = i;
+      pool.execute(new Runnable() {
+        @Override
+        public void run() {
+          if (build.generation == latest.get()) {
+            if (pathes) {
+              build.buffer.buildPath(chart, graph, from, to, bucketSize);
+            } else {
+              build.buffer.reduce(chart, graph, from, to, bucketSize);
+            }
+          }
+          build.onTaskDone();
+        }
+      });
+    }
+  }
+
+  /**
+   * One build of back buffer, it's published on view thread when all its tasks are done.
+   */
+  private class Build implements Runnable {
+    final int generation;
+    final Buffer buffer;
+    final long startTime = System.nanoTime();
+    final AtomicInteger remaining = new AtomicInteger();
+    long buildNs;
+
+    Build(final int generation, final Buffer buffer) {
+      this.generation = generation;
+      this.buffer = buffer;
+    }
+
+    /**
+     * Called by every task, the last one posts publication.
+     */
+    void onTaskDone() {
+      if (remaining.decrementAndGet() == 0) {
+        buildNs = System.nanoTime() - startTime;
+        handler.post(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      building = false;
+      if (generation == latest.get()) {
+        back = front;
+        front = buffer;
+        listener.onPointsPublished(buffer, buildNs);
+      }
+      if (hasPending) {
+        startPending();
+      }
+    }
+  }
+}
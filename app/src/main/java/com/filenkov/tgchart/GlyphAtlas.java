@@ -0,0 +1,133 @@
+package com.filenkov.tgchart;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.util.Arrays;
+
+/**
+ * Glyphs of one text size and typeface pre-rasterized into an ALPHA_8 bitmap with a table of advances.
+ * Labels are composed by blitting glyphs, so drawing and measuring them needs no text shaping.
+ * Alpha bitmap is drawn with color of paint, so one atlas serves both themes.
+ * Kerning is not applied, labels containing chars out of atlas are drawn by Canvas.drawText().
+ */
+class GlyphAtlas {
+  /**
+   * Space around glyph in its cell, so antialiased edges aren't cut.
+   */
+  private static final int PADDING = 2;
+  /**
+   * Sorted chars of atlas.
+   */
+  private final char[] chars;
+  private final float[] advances;
+  /**
+   * Left of cell of every glyph in bitmap.
+   */
+  private final int[] lefts;
+  private final int[] widths;
+  /**
+   * Distance from cell top to baseline.
+   */
+  private final int baseline;
+  private final Bitmap bitmap;
+  private final Rect src = new Rect();
+  private final RectF dst = new RectF();
+
+  /**
+   * @param paint   text paint, its size and typeface are used.
+   * @param symbols chars of atlas, duplicates are allowed.
+   */
+  GlyphAtlas(final Paint paint, final String symbols) {
+    char[] sorted = symbols.toCharArray();
+    Arrays.sort(sorted);
+    int count = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        sorted[count++] = sorted[i];
+      }
+    }
+    chars = Arrays.copyOf(sorted, count);
+    String unique = new String(chars);
+    advances = new float[count];
+    paint.getTextWidths(unique, advances);
+    lefts = new int[count];
+    widths = new int[count];
+    int width = 0;
+    for (int i = 0; i < count; i++) {
+      lefts[i] = width;
+      widths[i] = (int) Math.ceil(advances[i]) + 2 * PADDING;
+      width += widths[i];
+    }
+    Paint.FontMetrics metrics = paint.getFontMetrics();
+    baseline = (int) Math.ceil(-metrics.top) + PADDING;
+    int height = baseline + (int) Math.ceil(metrics.bottom) + PADDING;
+
+    bitmap = Bitmap.createBitmap(Math.max(1, width), height, Bitmap.Config.ALPHA_8);
+    Canvas canvas = new Canvas(bitmap);
+    Paint glyphPaint = new Paint(paint);
+    glyphPaint.setColor(0xffffffff); // style and stroke width are kept
+    for (int i = 0; i < count; i++) {
+      canvas.drawText(chars, i, 1, lefts[i] + PADDING, baseline, glyphPaint);
+    }
+  }
+
+  /**
+   * @return width of text or -1 if some chars are out of atlas.
+   */
+  float measure(final char[] text, final int start, final int length) {
+    float width = 0;
+    for (int i = start; i < start + length; i++) {
+      int glyph = Arrays.binarySearch(chars, text[i]);
+      if (glyph < 0) {
+        return -1;
+      }
+      width += advances[glyph];
+    }
+    return width;
+  }
+
+  /**
+   * Measure text by atlas or by paint if atlas doesn't contain its chars.
+   */
+  float measure(final char[] text, final int start, final int length, final Paint paint) {
+    float width = measure(text, start, length);
+    return width >= 0 ? width : paint.measureText(text, start, length);
+  }
+
+  /**
+   * Draw text like Canvas.drawText() with default alignment, glyphs are aligned to pixels.
+   *
+   * @param canvas canvas.
+   * @param text   text.
+   * @param start  index of the first char.
+   * @param length count of chars.
+   * @param x      left of text.
+   * @param y      baseline of text.
+   * @param paint  paint of text, its color and alpha are used.
+   */
+  void draw(final Canvas canvas, final char[] text, final int start, final int length,
+            final float x, final float y, final Paint paint) {
+    if (measure(text, start, length) < 0) {
+      canvas.drawText(text, start, length, x, y, paint);
+      return;
+    }
+    float left = x;
+    int top = Math.round(y) - baseline;
+    for (int i = start; i < start + length; i++) {
+      int glyph = Arrays.binarySearch(chars, text[i]);
+      int cellLeft = Math.round(left) - PADDING;
+      src.set(lefts[glyph], 0, lefts[glyph] + widths[glyph], bitmap.getHeight());
+      dst.set(cellLeft, top, cellLeft + widths[glyph], top + bitmap.getHeight());
+      canvas.drawBitmap(bitmap, src, dst, paint);
+      left += advances[glyph];
+    }
+  }
+
+  void recycle() {
+    bitmap.recycle();
+  }
+}
@@ -0,0 +1,131 @@
+package com.filenkov.tgchart;
+
+import android.graphics.Matrix;
+import android.graphics.Path;
+
+/**
+ * Decimated path of one graph in data space: x is absolute index of value minus origin, y is value.
+ * First value and complete buckets are kept in body, the last incomplete bucket and the last value
+ * are kept in tail, so when values are appended only new buckets are added to body and the short
+ * tail is rebuilt. Result is the same as reducing the whole range at once.
+ */
+class GraphPath {
+  private final Path body = new Path();
+  private final Path tail = new Path();
+  /**
+   * Absolute index of value with x = 0, it's the first value of path.
+   */
+  private long origin = -1;
+  /**
+   * Absolute index of the last value of path.
+   */
+  private long end = -1;
+  private int bucketSize;
+  /**
+   * Absolute index of the first value not in body.
+   */
+  private long tailStart;
+  private float lastBodyX;
+  private float lastBodyY;
+
+  void reset() {
+    body.reset();
+    tail.reset();
+    origin = -1;
+    end = -1;
+  }
+
+  boolean isEmpty() {
+    return origin < 0;
+  }
+
+  /**
+   * @return absolute index of the first value.
+   */
+  long origin() {
+    return origin;
+  }
+
+  /**
+   * @return absolute index of the last value.
+   */
+  long end() {
+    return end;
+  }
+
+  int bucketSize() {
+    return bucketSize;
+  }
+
+  /**
+   * Build path of values range.
+   *
+   * @param chart      chart.
+   * @param graph      index of graph.
+   * @param from       first index, inclusive.
+   * @param to         last index, inclusive.
+   * @param bucketSize values in one bucket, 1 keeps all values.
+   * @param indices    reusable buffer of Decimator.capacity(from, to, bucketSize) indices.
+   * @param values     reusable buffer of the same size for values.
+   */
+  void build(final ChartData chart, final int graph, final int from, final int to, final int bucketSize,
+             final int[] indices, final int[] values) {
+    reset();
+    this.bucketSize = bucketSize;
+    origin = chart.firstIndex + from;
+    tailStart = origin + 1;
+    lastBodyX = 0;
+    lastBodyY = chart.value(graph, from);
+    body.moveTo(lastBodyX, lastBodyY);
+    extend(chart, graph, to, indices, values);
+  }
+
+  /**
+   * Extend path to the new last value, the first value should be kept in chart.
+   *
+   * @param chart   chart.
+   * @param graph   index of graph.
+   * @param to      new last index, inclusive, not less than the current one.
+   * @param indices reusable buffer of Decimator.capacity() indices for appended range.
+   * @param values  reusable buffer of the same size for values.
+   */
+  void extend(final ChartData chart, final int graph, final int to,
+              final int[] indices, final int[] values) {
+    long first = chart.firstIndex;
+    long last = first + to;
+    // everything before the bucket of the last value is complete
+    long bodyEnd = Math.max(tailStart, (last / bucketSize) * bucketSize);
+    if (bodyEnd > tailStart) {
+      int count = chart.buckets(graph, (int) (tailStart - first), (int) (bodyEnd - 1 - first), bucketSize,
+          indices, values, 0);
+      for (int k = 0; k < count; k++) {
+        lastBodyX = indices[k] + first - origin;
+        lastBodyY = values[k];
+        body.lineTo(lastBodyX, lastBodyY);
+      }
+      tailStart = bodyEnd;
+    }
+
+    tail.rewind();
+    if (last > origin) {
+      tail.moveTo(lastBodyX, lastBodyY);
+      int count = chart.buckets(graph, (int) (tailStart - first), to - 1, bucketSize, indices, values, 0);
+      for (int k = 0; k < count; k++) {
+        tail.lineTo(indices[k] + first - origin, values[k]);
+      }
+      tail.lineTo(last - origin, chart.value(graph, to));
+    }
+    end = last;
+  }
+
+  /**
+   * Map path to view space.
+   *
+   * @param matrix transformation from data space.
+   * @param dst    result.
+   */
+  void transform(final Matrix matrix, final Path dst) {
+    body.transform(matrix, dst);
+    dst.addPath(tail, matrix);
+  }
+}
@@ -1,49 +1,62 @@
 package com.filenkov.tgchart;
 
 import android.app.Activity;
-import android.content.Context;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.LinearLayout;
+import android.widget.ListView;
 import android.widget.Toast;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-
-import java.io.IOException;
-import java.io.InputStream;
-
 public class MainActivity extends Activity {
   private boolean nightMode = false;
-  private ChartView[] chartViews;
+  private boolean metricsOverlay = false;
+  private ListView chartsList;
+  private ChartAdapter chartAdapter;
   private LinearLayout toolbar;
   private LinearLayout mainLayout;
+  private ChartLoader chartLoader;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
-    String getPackageName = getPackageName();
     mainLayout = findViewById(R.id.main);
     toolbar = findViewById(R.id.toolbar);
 
-    chartViews = new ChartView[5];
-    try {
-      JSONArray json = loadJSONFromAsset(this, "chart_data.json");
-      for (int i = 0; i < 5; i++) {
-        chartViews[i] = findViewById(getResources().getIdentifier("chart" + i, "id", getPackageName));
-        if (nightMode) {
-          chartViews[i].setNightMode(false);
-        } else {
-          chartViews[i].setDayMode(false);
+    chartsList = findViewById(R.id.charts);
+    chartAdapter = new ChartAdapter(getLayoutInflater(), chartsList);
+    chartsList.setAdapter(chartAdapter);
+    chartsList.setRecyclerListener(chartAdapter);
+
+    // charts show placeholder until they are loaded
+    chartLoader = new ChartLoader(this, new ChartLoader.Callback() {
+      private boolean errorShown = false;
+
+      @Override
+      public void onChartsCount(final int count) {
+        chartAdapter.setChartsCount(count);
+      }
+
+      @Override
+      public void onChartLoaded(final int index, final ChartData chart) {
+        chartAdapter.setChart(index, chart);
+      }
+
+      @Override
+      public void onChartError(final int index, final String message) {
+        chartAdapter.setChartError(index, message);
+        onError(message);
+      }
+
+      @Override
+      public void onError(final String message) {
+        if (!errorShown) {
+          errorShown = true;
+          Toast.makeText(MainActivity.this, message, Toast.LENGTH_LONG).show();
         }
-        chartViews[i].setChartData(new ChartData(json.getJSONObject(i)));
       }
-    } catch (IOException e) {
-      Toast.makeText(this, "Error while reading graphs", Toast.LENGTH_LONG).show();
-    } catch (JSONException e) {
-      Toast.makeText(this, "Error while parsing graphs to json", Toast.LENGTH_LONG).show();
-    }
+    });
+    chartLoader.start();
 
     findViewById(R.id.nightmode).setOnClickListener(new View.OnClickListener() {
       @Override
@@ -52,41 +65,45 @@ public class MainActivity extends Activity {
           nightMode = false;
           mainLayout.setBackgroundColor(getResources().getColor(R.color.dayBgColor));
           toolbar.setBackgroundColor(getResources().getColor(R.color.dayToolbarBgColor));
-          for (int i = 0; i < 5; i++) {
-            chartViews[i].setDayMode(true);
-          }
         } else {
           nightMode = true;
           mainLayout.setBackgroundColor(getResources().getColor(R.color.nightBgColor));
           toolbar.setBackgroundColor(getResources().getColor(R.color.nightToolbarBgColor));
-          for (int i = 0; i < 5; i++) {
-            chartViews[i].setNightMode(true);
+        }
+        chartAdapter.setNightMode(nightMode);
+        // views in the scrap heap get the mode when they are bound again
+        for (int i = 0; i < chartsList.getChildCount(); i++) {
+          ChartView chartView = chartsList.getChildAt(i).findViewById(R.id.chart);
+          if (nightMode) {
+            chartView.setNightMode(true);
+          } else {
+            chartView.setDayMode(true);
           }
         }
       }
     });
+    // debug overlay with frame time metrics of every chart
+    findViewById(R.id.nightmode).setOnLongClickListener(new View.OnLongClickListener() {
+      @Override
+      public boolean onLongClick(View v) {
+        metricsOverlay = !metricsOverlay;
+        chartAdapter.setMetricsOverlayEnabled(metricsOverlay);
+        for (int i = 0; i < chartsList.getChildCount(); i++) {
+          ChartView chartView = chartsList.getChildAt(i).findViewById(R.id.chart);
+          chartView.setMetricsOverlayEnabled(metricsOverlay);
+        }
+        return true;
+      }
+    });
   }
 
   @Override
   public void onDestroy() {
     super.onDestroy();
-    for (int i = 0; i < 5; i++) {
-      ((ChartView) findViewById(getResources().getIdentifier("chart" + i, "id", getPackageName())))
-          .onDestroy();
+    chartLoader.cancel();
+    for (int i = 0; i < chartsList.getChildCount(); i++) {
+      ((ChartView) chartsList.getChildAt(i).findViewById(R.id.chart)).onDestroy();
     }
-  }
-
-  /**
-   * @param context  context.
-   * @param filename json file name.
-   * @return JSON array.
-   */
-  public JSONArray loadJSONFromAsset(final Context context, final String filename) throws IOException, JSONException {
-    InputStream is = context.getAssets().open(filename);
-    int size = is.available();
-    byte[] buffer = new byte[size];
-    is.read(buffer);
-    is.close();
-    return new JSONArray(new String(buffer, "UTF-8"));
+    chartAdapter.close();
   }
 }
@@ -0,0 +1,163 @@
+package com.filenkov.tgchart;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.Arrays;
+
+/**
+ * Durations of cold start phases of every chart. Only the first run of a phase is recorded,
+ * so values describe the launch, later rebinds of scrolled views don't change them.
+ * Every run of a phase is also an android.os.Trace section (API 18+), so phases are visible in systrace.
+ * Phases are recorded on loader threads, UI thread and render thread of ChartTextureView.
+ */
+public final class StartupMetrics {
+  /**
+   * Read or map charts asset, it isn't related to one chart.
+   */
+  public static final int PHASE_ASSET = 0;
+  /**
+   * Parse chart and build its ChartData, streaming reader does both in one pass.
+   */
+  public static final int PHASE_PARSE = 1;
+  /**
+   * Compress columns of long chart.
+   */
+  public static final int PHASE_PACK = 2;
+  /**
+   * ChartView.setChartData() without preparation of geometry: window and displayed graphs are restored
+   * and max of graphs is found. Date labels are only reset here, they are formatted lazily when drawn.
+   */
+  public static final int PHASE_BIND = 3;
+  /**
+   * ChartView.onSizeChanged() without preparation of geometry, text is measured here.
+   */
+  public static final int PHASE_SIZE = 4;
+  /**
+   * Prepare drawing of chart, see ChartView.prepareChart(). Pathes built by workers aren't included,
+   * they are published to the view later.
+   */
+  public static final int PHASE_PREPARE = 5;
+  public static final int PHASE_FIRST_DRAW = 6;
+  public static final int PHASES_COUNT = 7;
+  /**
+   * Index of chart for phases which aren't related to one chart.
+   */
+  public static final int LAUNCH = -1;
+  /**
+   * Max length of one summary line, see summary().
+   */
+  static final int SUMMARY_LENGTH = 128;
+  private static final String[] NAMES = {"asset", "parse", "pack", "bind", "size", "prepare", "draw"};
+  private static final String[] SECTIONS = {"Startup asset", "Startup parse", "Startup pack", "Startup bind",
+      "Startup size", "Startup prepare", "Startup first draw"};
+
+  private static final Object lock = new Object();
+  /**
+   * Durations of every chart in ns, -1 when phase isn't recorded. Row 0 is LAUNCH, row i + 1 is chart i.
+   * Charts are identified by their index in the list, views get it from ChartView.State.
+   */
+  private static long[][] durations = new long[0][];
+
+  private StartupMetrics() {
+  }
+
+  /**
+   * Start phase on current thread, it should be ended by end() on the same thread.
+   *
+   * @param phase phase.
+   * @return start time.
+   */
+  static long begin(final int phase) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+      Trace.beginSection(SECTIONS[phase]);
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * End phase started by begin().
+   *
+   * @param chart   index of chart or LAUNCH.
+   * @param phase   phase.
+   * @param startNs value returned by begin().
+   */
+  static void end(final int chart, final int phase, final long startNs) {
+    long duration = System.nanoTime() - startNs;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+      Trace.endSection();
+    }
+    synchronized (lock) {
+      long[] row = row(chart);
+      if (row[phase] < 0) {
+        row[phase] = duration;
+      }
+    }
+  }
+
+  /**
+   * @param chart index of chart or LAUNCH.
+   * @param phase phase.
+   * @return duration of the first run of phase or -1 if it wasn't run.
+   */
+  public static long durationNs(final int chart, final int phase) {
+    synchronized (lock) {
+      return chart + 1 < durations.length ? durations[chart + 1][phase] : -1;
+    }
+  }
+
+  /**
+   * @return count of charts with recorded phases.
+   */
+  public static int chartsCount() {
+    synchronized (lock) {
+      return Math.max(0, durations.length - 1);
+    }
+  }
+
+  public static String phaseName(final int phase) {
+    return NAMES[phase];
+  }
+
+  /**
+   * Write one line summary of recorded phases of chart like "chart 2 parse 12.5 bind 0.5 draw 4.0 ms".
+   *
+   * @param chart index of chart or LAUNCH.
+   * @param out   buffer of at least SUMMARY_LENGTH chars.
+   * @return count of written chars.
+   */
+  static int summary(final int chart, final char[] out) {
+    int p;
+    if (chart == LAUNCH) {
+      p = FrameMetrics.append("launch", out, 0);
+    } else {
+      p = FrameMetrics.append("chart ", out, 0);
+      p += IntFormatter.format(chart, out, p);
+    }
+    for (int i = 0; i < PHASES_COUNT; i++) {
+      long duration = durationNs(chart, i);
+      if (duration >= 0) {
+        out[p++] = ' ';
+        p = FrameMetrics.append(NAMES[i], out, p);
+        out[p++] = ' ';
+        p = FrameMetrics.appendMs(duration, out, p);
+      }
+    }
+    return FrameMetrics.append(" ms", out, p);
+  }
+
+  /**
+   * @return row of chart, rows are added when needed.
+   */
+  private static long[] row(final int chart) {
+    if (durations.length <= chart + 1) {
+      int oldLength = durations.length;
+      durations = Arrays.copyOf(durations, chart + 2);
+      for (int i = oldLength; i < durations.length; i++) {
+        durations[i] = new long[PHASES_COUNT];
+        Arrays.fill(durations[i], -1);
+      }
+    }
+    return durations[chart + 1];
+  }
+}
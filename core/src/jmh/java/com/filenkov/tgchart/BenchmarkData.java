@@ -0,0 +1,50 @@
+package com.filenkov.tgchart;
+
+import java.nio.charset.Charset;
+
+/**
+ * JSON of synthetic charts for parse benchmarks, see SyntheticCharts.
+ */
+class BenchmarkData {
+  static final int GRAPHS_COUNT = 2;
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * Chart in the format of chart_data.json, with daily timeline and GRAPHS_COUNT line graphs.
+   *
+   * @param count count of values.
+   * @return UTF-8 JSON of one chart object.
+   */
+  static byte[] json(final int count) {
+    StringBuilder sb = new StringBuilder(count * 8 * (GRAPHS_COUNT + 2));
+    sb.append("{\"columns\":[[\"x\"");
+    for (int i = 0; i < count; i++) {
+      sb.append(',').append(SyntheticCharts.START + i * SyntheticCharts.DAY);
+    }
+    sb.append(']');
+    for (int graph = 0; graph < GRAPHS_COUNT; graph++) {
+      int[] values = SyntheticCharts.values(count, graph);
+      sb.append(",[\"y").append(graph).append('"');
+      for (int i = 0; i < count; i++) {
+        sb.append(',').append(values[i]);
+      }
+      sb.append(']');
+    }
+    sb.append("],\"types\":{\"x\":\"x\"");
+    for (int graph = 0; graph < GRAPHS_COUNT; graph++) {
+      sb.append(",\"y").append(graph).append("\":\"line\"");
+    }
+    sb.append("},\"names\":{");
+    for (int graph = 0; graph < GRAPHS_COUNT; graph++) {
+      sb.append(graph == 0 ? "" : ",").append("\"y").append(graph).append("\":\"#").append(graph).append('"');
+    }
+    sb.append("},\"colors\":{");
+    for (int graph = 0; graph < GRAPHS_COUNT; graph++) {
+      sb.append(graph == 0 ? "" : ",").append("\"y").append(graph).append("\":\"#3DC23F\"");
+    }
+    sb.append("}}");
+    return sb.toString().getBytes(Charset.forName("UTF-8"));
+  }
+}
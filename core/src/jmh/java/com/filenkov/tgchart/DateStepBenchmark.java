@@ -0,0 +1,51 @@
+package com.filenkov.tgchart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Step of timeline dates for random selections: DateSteps against the former floating point log and pow.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateStepBenchmark {
+  private static final int SELECTIONS_COUNT = 1024;
+  private static final int OPTIMAL_DATES_COUNT = 6;
+
+  @Param({"1000", "100000", "10000000"})
+  int points;
+
+  private final int[] selections = new int[SELECTIONS_COUNT];
+  private int selection;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(1);
+    for (int i = 0; i < SELECTIONS_COUNT; i++) {
+      selections[i] = 1 + random.nextInt(points);
+    }
+  }
+
+  @Benchmark
+  public int dateSteps() {
+    return DateSteps.step(selections[selection++ & (SELECTIONS_COUNT - 1)], OPTIMAL_DATES_COUNT);
+  }
+
+  @Benchmark
+  public int logPow() {
+    int selectionSize = selections[selection++ & (SELECTIONS_COUNT - 1)];
+    int stepPower = (int) (Math.log((double) (selectionSize) / OPTIMAL_DATES_COUNT) / Math.log(2));
+    stepPower = Math.max(1, stepPower);
+    return (int) Math.pow(2, stepPower);
+  }
+}
@@ -0,0 +1,48 @@
+package com.filenkov.tgchart;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON to columns parsing: org.json tree in ChartData(JSONObject) against streaming ChartDataReader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParseBenchmark {
+  /**
+   * Capped at 1M points: JSON of 10M points is about 300M chars and its org.json tree doesn't fit the fork heap.
+   */
+  @Param({"1000", "100000", "1000000"})
+  int points;
+
+  private byte[] json;
+
+  @Setup
+  public void setUp() {
+    json = BenchmarkData.json(points);
+  }
+
+  @Benchmark
+  public ChartData tree() throws JSONException {
+    return new ChartData(new JSONObject(new String(json, Charset.forName("UTF-8"))));
+  }
+
+  @Benchmark
+  public ChartData streaming() throws IOException, JSONException {
+    return new ChartDataReader(new ByteArrayInputStream(json)).readChart();
+  }
+}
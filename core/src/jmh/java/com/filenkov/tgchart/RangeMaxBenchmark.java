@@ -0,0 +1,61 @@
+package com.filenkov.tgchart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Max of visible window as in ChartView.onSelectionChanged(): RangeIndex query against linear scan.
+ * Windows are random with width from 1 point to the whole chart.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RangeMaxBenchmark {
+  private static final int WINDOWS_COUNT = 1024;
+
+  @Param({"1000", "100000", "10000000"})
+  int points;
+
+  private int[] values;
+  private RangeIndex index;
+  private final int[] froms = new int[WINDOWS_COUNT];
+  private final int[] tos = new int[WINDOWS_COUNT];
+  private int window;
+
+  @Setup
+  public void setUp() {
+    values = SyntheticCharts.values(points, 0);
+    index = new RangeIndex(values, points);
+    Random random = new Random(1);
+    for (int i = 0; i < WINDOWS_COUNT; i++) {
+      int width = 1 + random.nextInt(points);
+      froms[i] = random.nextInt(points - width + 1);
+      tos[i] = froms[i] + width;
+    }
+  }
+
+  @Benchmark
+  public int rangeIndex() {
+    int w = window++ & (WINDOWS_COUNT - 1);
+    return index.max(froms[w], tos[w]);
+  }
+
+  @Benchmark
+  public int scan() {
+    int w = window++ & (WINDOWS_COUNT - 1);
+    int max = Integer.MIN_VALUE;
+    for (int i = froms[w], to = tos[w]; i < to; i++) {
+      max = Math.max(max, values[i]);
+    }
+    return max;
+  }
+}
@@ -0,0 +1,67 @@
+package com.filenkov.tgchart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of graph to view space as in ChartView vertex renderer, for the whole chart on a 1080 px wide view:
+ * every point, and points reduced by Decimator first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VertexBenchmark {
+  private static final float WIDTH = 1080;
+  private static final float HEIGHT = 1200;
+
+  @Param({"1000", "100000", "10000000"})
+  int points;
+
+  private int[] values;
+  private int[] indices;
+  private int bucketSize;
+  private int[] keptIndices;
+  private int[] keptValues;
+  private float[] vertices;
+  private float stepX;
+  private float scaleY;
+
+  @Setup
+  public void setUp() {
+    values = SyntheticCharts.values(points, 0);
+    indices = new int[points];
+    for (int i = 0; i < points; i++) {
+      indices[i] = i;
+    }
+    bucketSize = Decimator.bucketSize(points, WIDTH);
+    int capacity = Math.max(points, Decimator.capacity(0, points - 1, bucketSize));
+    keptIndices = new int[capacity];
+    keptValues = new int[capacity];
+    vertices = new float[4 * capacity];
+    stepX = WIDTH / Math.max(1, points - 1);
+    int max = 0;
+    for (int value : values) {
+      max = Math.max(max, value);
+    }
+    scaleY = HEIGHT / Math.max(1, max);
+  }
+
+  @Benchmark
+  public int fill() {
+    return LineVertices.fill(indices, values, points, 0, stepX, HEIGHT, scaleY, vertices);
+  }
+
+  @Benchmark
+  public int decimateAndFill() {
+    int count = Decimator.buckets(values, 0, 0, points - 1, bucketSize, keptIndices, keptValues, 0);
+    return LineVertices.fill(keptIndices, keptValues, count, 0, stepX, HEIGHT, scaleY, vertices);
+  }
+}
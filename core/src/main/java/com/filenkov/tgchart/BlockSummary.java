@@ -0,0 +1,196 @@
+package com.filenkov.tgchart;
+
+/**
+ * Min and max of every SIZE values of a graph with their indices.
+ * Small enough to stay on heap for any chart, answers range queries and decimation of wide
+ * ranges by reading only the partial blocks at range edges.
+ */
+class BlockSummary {
+  static final int SHIFT = 8;
+  static final int SIZE = 1 << SHIFT;
+
+  private final Columns columns;
+  private final int graph;
+  private final int valuesCount;
+  private final int[] minIndices;
+  private final int[] minValues;
+  private final int[] maxIndices;
+  private final int[] maxValues;
+  private final RangeIndex minIndex;
+  private final RangeIndex maxIndex;
+
+  /**
+   * Build summary, reads every value of graph once.
+   *
+   * @param columns     graph values.
+   * @param graph       index of graph.
+   * @param valuesCount count of values.
+   */
+  BlockSummary(final Columns columns, final int graph, final int valuesCount) {
+    this.columns = columns;
+    this.graph = graph;
+    this.valuesCount = valuesCount;
+    int blocks = (valuesCount + SIZE - 1) >> SHIFT;
+    minIndices = new int[blocks];
+    minValues = new int[blocks];
+    maxIndices = new int[blocks];
+    maxValues = new int[blocks];
+    fill();
+    minIndex = new RangeIndex(minValues, blocks);
+    maxIndex = new RangeIndex(maxValues, blocks);
+  }
+
+  /**
+   * Rebuild summary in place after values of graph are changed, reads every value once.
+   */
+  void update() {
+    fill();
+    minIndex.setValues(minValues, minValues.length);
+    maxIndex.setValues(maxValues, maxValues.length);
+  }
+
+  private void fill() {
+    for (int j = 0; j < valuesCount; j++) {
+      int b = j >> SHIFT;
+      int value = columns.value(graph, j);
+      if ((j & (SIZE - 1)) == 0 || value < minValues[b]) {
+        minIndices[b] = j;
+        minValues[b] = value;
+      }
+      if ((j & (SIZE - 1)) == 0 || value > maxValues[b]) {
+        maxIndices[b] = j;
+        maxValues[b] = value;
+      }
+    }
+  }
+
+  /**
+   * @param from first index, inclusive.
+   * @param to   last index, exclusive.
+   * @return max value in range.
+   */
+  int max(final int from, final int to) {
+    int blockFrom = (from + SIZE - 1) >> SHIFT;
+    int blockTo = to >> SHIFT;
+    if (blockFrom >= blockTo) {
+      return scanMax(from, to);
+    }
+    int max = maxIndex.max(blockFrom, blockTo);
+    max = Math.max(max, scanMax(from, blockFrom << SHIFT));
+    return Math.max(max, scanMax(blockTo << SHIFT, to));
+  }
+
+  /**
+   * @param from first index, inclusive.
+   * @param to   last index, exclusive.
+   * @return min value in range.
+   */
+  int min(final int from, final int to) {
+    int blockFrom = (from + SIZE - 1) >> SHIFT;
+    int blockTo = to >> SHIFT;
+    if (blockFrom >= blockTo) {
+      return scanMin(from, to);
+    }
+    int min = minIndex.min(blockFrom, blockTo);
+    min = Math.min(min, scanMin(from, blockFrom << SHIFT));
+    return Math.min(min, scanMin(blockTo << SHIFT, to));
+  }
+
+  /**
+   * Append min and max of every bucket in range in original order, see Decimator.buckets().
+   *
+   * @param from       first index, inclusive.
+   * @param to         last index, inclusive.
+   * @param bucketSize power of two bucket size, not smaller than SIZE.
+   * @param outIndices indices of kept values.
+   * @param outValues  kept values.
+   * @param count      count of already kept values.
+   * @return new count of kept values.
+   */
+  int buckets(final int from, final int to, final int bucketSize,
+              final int[] outIndices, final int[] outValues, int count) {
+    if (from > to) {
+      return count;
+    }
+    for (int bucket = (from / bucketSize) * bucketSize; bucket <= to; bucket += bucketSize) {
+      count = minMax(Math.max(bucket, from), Math.min(bucket + bucketSize - 1, to), outIndices, outValues, count);
+    }
+    return count;
+  }
+
+  /**
+   * Append min and max of values range in original order.
+   */
+  private int minMax(final int from, final int to, final int[] outIndices, final int[] outValues, int count) {
+    int blockFrom = (from + SIZE - 1) >> SHIFT;
+    int blockTo = (to + 1) >> SHIFT;
+    if (blockFrom >= blockTo) {
+      blockFrom = blockTo = (to + 1 + SIZE - 1) >> SHIFT; // no whole blocks, scan everything
+    }
+    int resultMinIndex = from;
+    int resultMinValue = columns.value(graph, from);
+    int resultMaxIndex = from;
+    int resultMaxValue = resultMinValue;
+    int scanEnd = Math.min(to, (blockFrom << SHIFT) - 1);
+    for (int j = from + 1; j <= scanEnd; j++) {
+      int value = columns.value(graph, j);
+      if (value < resultMinValue) {
+        resultMinIndex = j;
+        resultMinValue = value;
+      } else if (value > resultMaxValue) {
+        resultMaxIndex = j;
+        resultMaxValue = value;
+      }
+    }
+    for (int b = blockFrom; b < blockTo; b++) {
+      if (minValues[b] < resultMinValue) {
+        resultMinIndex = minIndices[b];
+        resultMinValue = minValues[b];
+      }
+      if (maxValues[b] > resultMaxValue) {
+        resultMaxIndex = maxIndices[b];
+        resultMaxValue = maxValues[b];
+      }
+    }
+    for (int j = Math.max(scanEnd + 1, blockTo << SHIFT); j <= to; j++) {
+      int value = columns.value(graph, j);
+      if (value < resultMinValue) {
+        resultMinIndex = j;
+        resultMinValue = value;
+      } else if (value > resultMaxValue) {
+        resultMaxIndex = j;
+        resultMaxValue = value;
+      }
+    }
+
+    if (resultMinIndex <= resultMaxIndex) {
+      outIndices[count] = resultMinIndex;
+      outValues[count++] = resultMinValue;
+    }
+    if (resultMaxIndex != resultMinIndex) {
+      outIndices[count] = resultMaxIndex;
+      outValues[count++] = resultMaxValue;
+    }
+    if (resultMinIndex > resultMaxIndex) {
+      outIndices[count] = resultMinIndex;
+      outValues[count++] = resultMinValue;
+    }
+    return count;
+  }
+
+  private int scanMax(final int from, final int to) {
+    int max = Integer.MIN_VALUE;
+    for (int j = from; j < to; j++) {
+      max = Math.max(max, columns.value(graph, j));
+    }
+    return max;
+  }
+
+  private int scanMin(final int from, final int to) {
+    int min = Integer.MAX_VALUE;
+    for (int j = from; j < to; j++) {
+      min = Math.min(min, columns.value(graph, j));
+    }
+    return min;
+  }
+}
@@ -0,0 +1,332 @@
+package com.filenkov.tgchart;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+class ChartData {
+  /**
+   * Chart types, see type.
+   */
+  static final int CHART_LINE = 0;
+  static final int CHART_BAR = 1;
+  static final int CHART_AREA = 2;
+  private static final String TYPE_LINE = "line";
+  private static final String TYPE_BAR = "bar";
+  private static final String TYPE_AREA = "area";
+  private static final String TYPE_X = "x";
+
+  int graphsCount;
+  int valuesCount;
+  /**
+   * Timestamps and values on heap, null when columns are in store, use accessors to read values.
+   */
+  long[] timeline;
+  int[][] graphs;
+  int[] maximums; // max values for every graph
+  int[] colors;
+  String[] names;
+  /**
+   * Min and max index for every graph.
+   */
+  private RangeIndex[] ranges;
+  /**
+   * Paged, packed or live columns of a chart or null.
+   */
+  Columns store;
+  /**
+   * Absolute index of the first value, count of values dropped from live chart.
+   */
+  long firstIndex = 0;
+  /**
+   * Type of graphs, one of CHART_LINE, CHART_BAR and CHART_AREA.
+   */
+  int type = CHART_LINE;
+  /**
+   * Every line graph has its own scale, second graph is signed on the right.
+   */
+  boolean yScaled = false;
+  boolean stacked = false;
+  /**
+   * Graphs are stacked to 100%.
+   */
+  boolean percentage = false;
+  /**
+   * Sums of stacked graphs, null when graphs aren't stacked, see buildStacks().
+   */
+  Stacks stacks;
+
+  /**
+   * Create empty chart, arrays should be filled by caller.
+   *
+   * @param graphsCount count of graphs.
+   * @param valuesCount count of values in every graph.
+   */
+  ChartData(final int graphsCount, final int valuesCount) {
+    this(graphsCount, valuesCount, null);
+  }
+
+  /**
+   * Create chart with values in columns store, maximums, colors and names should be filled by caller.
+   *
+   * @param graphsCount count of graphs.
+   * @param valuesCount count of values in every graph.
+   * @param store       columns, null to allocate columns on heap.
+   */
+  ChartData(final int graphsCount, final int valuesCount, final Columns store) {
+    this.graphsCount = graphsCount;
+    this.valuesCount = valuesCount;
+    this.store = store;
+    if (store == null) {
+      timeline = new long[valuesCount];
+      graphs = new int[graphsCount][valuesCount];
+    }
+    maximums = new int[graphsCount];
+    colors = new int[graphsCount];
+    names = new String[graphsCount];
+  }
+
+  ChartData(JSONObject json) throws JSONException {
+    JSONObject types = json.getJSONObject("types");
+    JSONObject jNames = json.getJSONObject("names");
+    JSONObject jColors = json.getJSONObject("colors");
+
+    graphsCount = jNames.length();
+    colors = new int[graphsCount];
+    names = new String[graphsCount];
+
+    // set graphs, names and colors
+    JSONArray columns = json.getJSONArray("columns");
+    valuesCount = columns.getJSONArray(0).length() - 1; // -1 because first item contains label.
+    graphs = new int[graphsCount][valuesCount];
+    maximums = new int[graphsCount];
+    timeline = new long[valuesCount];
+
+    yScaled = json.optBoolean("y_scaled");
+    stacked = json.optBoolean("stacked");
+    percentage = json.optBoolean("percentage");
+
+    int skip = 0; // when we detect timeline array in columns we need to skip it and should use i-1
+    for (int i = 0; i < graphsCount + 1; i++) { // +1 because one item contains timeline
+      JSONArray array = columns.getJSONArray(i);
+      String label = array.getString(0);
+      int graphType = graphType(types.getString(label));
+
+      if (TYPE_X.equals(types.getString(label))) {
+        // it's a timeline, fill times
+        for (int j = 0; j < valuesCount; j++) {
+          timeline[j] = array.getLong(j + 1);
+        }
+        skip++;
+
+      } else if (graphType >= 0) {
+        applyGraphType(graphType);
+
+        for (int j = 0; j < valuesCount; j++) {
+          int value = array.getInt(j + 1);
+          graphs[i - skip][j] = value;
+          // find max values
+          if (value > maximums[i - skip]) {
+            maximums[i - skip] = value;
+          }
+        }
+
+        colors[i - skip] = Colors.parse(jColors.getString(label));
+        names[i - skip] = jNames.getString(label);
+
+      } else {
+        skip++;
+      }
+    }
+    buildRangeIndex();
+    buildStacks();
+  }
+
+  /**
+   * @param type type of column in json.
+   * @return chart type of graph column or -1 if column isn't a graph.
+   */
+  static int graphType(final String type) {
+    if (TYPE_LINE.equals(type)) {
+      return CHART_LINE;
+    } else if (TYPE_BAR.equals(type)) {
+      return CHART_BAR;
+    } else if (TYPE_AREA.equals(type)) {
+      return CHART_AREA;
+    }
+    return -1;
+  }
+
+  /**
+   * Apply type of graph column to chart type, the first bar or area column sets type of mixed chart.
+   * All readers and convertChartData task of app build use this rule.
+   *
+   * @param graphType type of graph column, see graphType().
+   */
+  void applyGraphType(final int graphType) {
+    if (type == CHART_LINE) {
+      type = graphType;
+    }
+  }
+
+  /**
+   * Precompute sums of stacked graphs, should be called once values and flags are set.
+   * Bars and areas are always stacked, a single graph is a stack of one.
+   */
+  void buildStacks() {
+    if ((type != CHART_LINE || stacked || percentage) && graphsCount > 0) {
+      stacks = new Stacks(this); // sums of columns in store are packed, they aren't on heap either
+    }
+  }
+
+  /**
+   * Build min and max index of graphs, should be called once graphs are filled.
+   */
+  void buildRangeIndex() {
+    ranges = new RangeIndex[graphsCount];
+    for (int i = 0; i < graphsCount; i++) {
+      ranges[i] = new RangeIndex(graphs[i], valuesCount);
+    }
+  }
+
+  /**
+   * Replace heap columns with compressed PackedStore, values stay available through accessors.
+   */
+  void pack() {
+    if (store == null) {
+      if (stacks != null) {
+        stacks.pack();
+      }
+      store = new PackedStore(timeline, graphs, valuesCount);
+      timeline = null;
+      graphs = null;
+      ranges = null;
+    }
+  }
+
+  /**
+   * @param index index of value.
+   * @return timestamp.
+   */
+  long time(final int index) {
+    return store != null ? store.time(index) : timeline[index];
+  }
+
+  /**
+   * @param graph index of graph.
+   * @param index index of value.
+   * @return graph value.
+   */
+  int value(final int graph, final int index) {
+    return store != null ? store.value(graph, index) : graphs[graph][index];
+  }
+
+  /**
+   * @param graph index of graph.
+   * @param from  first index, inclusive.
+   * @param to    last index, exclusive.
+   * @return max value of graph in range.
+   */
+  int rangeMax(final int graph, final int from, final int to) {
+    return store != null ? store.rangeMax(graph, from, to) : ranges[graph].max(from, to);
+  }
+
+  /**
+   * @param graph index of graph.
+   * @param from  first index, inclusive.
+   * @param to    last index, exclusive.
+   * @return min value of graph in range.
+   */
+  int rangeMin(final int graph, final int from, final int to) {
+    return store != null ? store.rangeMin(graph, from, to) : ranges[graph].min(from, to);
+  }
+
+  /**
+   * Append min and max values of every bucket in range, see Decimator.buckets().
+   * Buckets are aligned to absolute indices, see firstIndex.
+   *
+   * @param graph      index of graph.
+   * @param from       first index, inclusive.
+   * @param to         last index, inclusive.
+   * @param bucketSize values in one bucket, 1 keeps all values.
+   * @param outIndices indices of kept values, see Decimator.capacity().
+   * @param outValues  kept values.
+   * @param count      count of already kept values.
+   * @return new count of kept values.
+   */
+  int buckets(final int graph, final int from, final int to, final int bucketSize,
+              final int[] outIndices, final int[] outValues, final int count) {
+    if (store == null) {
+      return Decimator.buckets(graphs[graph], 0, from, to, bucketSize, outIndices, outValues, count);
+    }
+    return store.buckets(graph, from, to, bucketSize, outIndices, outValues, count);
+  }
+
+  /**
+   * Move columns to ring buffer, so values can be appended. Only the newest values are kept
+   * if there are more of them than capacity.
+   *
+   * @param capacity max count of values.
+   */
+  void makeLive(final int capacity) {
+    if (stacks != null) {
+      throw new IllegalStateException("Stacked chart can't be live");
+    }
+    RingStore ring = new RingStore(graphsCount, capacity);
+    int[] values = new int[graphsCount];
+    int start = Math.max(0, valuesCount - capacity);
+    for (int j = start; j < valuesCount; j++) {
+      for (int i = 0; i < graphsCount; i++) {
+        values[i] = value(i, j);
+      }
+      ring.append(time(j), values);
+    }
+    close();
+    store = ring;
+    timeline = null;
+    graphs = null;
+    ranges = null;
+    firstIndex = start;
+    valuesCount = ring.size();
+    for (int i = 0; i < graphsCount; i++) {
+      maximums[i] = Math.max(0, ring.rangeMax(i, 0, valuesCount));
+    }
+  }
+
+  /**
+   * Append values to live chart, the oldest values are dropped when ring buffer is full.
+   * Costs O(log n) per graph. Should be called on UI thread, then views showing the chart
+   * should be notified by ChartView.onChartAppended().
+   *
+   * @param timestamp timestamp.
+   * @param values    value of every graph.
+   */
+  void append(final long timestamp, final int[] values) {
+    if (!(store instanceof RingStore)) {
+      throw new IllegalStateException("Chart isn't live, call makeLive() first");
+    }
+    RingStore ring = (RingStore) store;
+    if (ring.append(timestamp, values)) {
+      firstIndex++;
+    }
+    valuesCount = ring.size();
+    for (int i = 0; i < graphsCount; i++) {
+      maximums[i] = Math.max(0, ring.rangeMax(i, 0, valuesCount));
+    }
+  }
+
+  /**
+   * Release columns store, chart can't be used after that.
+   */
+  void close() {
+    if (store != null) {
+      try {
+        store.close();
+      } catch (IOException e) {
+        // nothing to do, paged file is read only
+      }
+    }
+  }
+}
@@ -0,0 +1,494 @@
+package com.filenkov.tgchart;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming reader of charts json.
+ * Reads input stream once and writes columns straight into primitive arrays of ChartData
+ * without building JSON DOM and boxing values.
+ * Keys of chart object ("columns", "types", "names", "colors" and flags) may go in any order.
+ */
+class ChartDataReader {
+  private static final String TYPE_X = "x";
+  private static final int BUFFER_SIZE = 16 * 1024;
+  /**
+   * Initial capacity of a column, grows twice when exceeded.
+   */
+  private static final int COLUMN_CAPACITY = 256;
+  private static final int END_OF_STREAM = -1;
+
+  private final InputStream in;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position = 0;
+  private int limit = 0;
+  /**
+   * Reusable buffer for string bytes.
+   */
+  private byte[] stringBytes = new byte[64];
+
+  ChartDataReader(final InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * Read array of charts.
+   *
+   * @return charts.
+   */
+  ChartData[] readCharts() throws IOException, JSONException {
+    List<ChartData> charts = new ArrayList<>();
+    expect('[');
+    if (peek() == ']') {
+      position++;
+      return new ChartData[0];
+    }
+    do {
+      charts.add(readChart());
+    } while (nextSeparator(']'));
+    return charts.toArray(new ChartData[charts.size()]);
+  }
+
+  /**
+   * Read one chart object.
+   *
+   * @return chart.
+   */
+  ChartData readChart() throws IOException, JSONException {
+    List<String> labels = new ArrayList<>();
+    List<long[]> columns = new ArrayList<>();
+    int valuesCount = -1;
+    Map<String, String> types = null;
+    Map<String, String> names = null;
+    Map<String, String> colors = null;
+    boolean yScaled = false;
+    boolean stacked = false;
+    boolean percentage = false;
+
+    expect('{');
+    if (peek() == '}') {
+      position++;
+    } else {
+      do {
+        String key = readString();
+        expect(':');
+        if ("columns".equals(key)) {
+          expect('[');
+          if (peek() == ']') {
+            // like JSONObject path, a chart without columns has nothing to draw
+            throw new JSONException("Chart must contain at least one column");
+          }
+          do {
+            expect('[');
+            labels.add(readString());
+            long[] column = new long[COLUMN_CAPACITY];
+            int count = 0;
+            while (nextSeparator(']')) {
+              if (count == column.length) {
+                column = Arrays.copyOf(column, count * 2);
+              }
+              column[count++] = readLong();
+            }
+            if (valuesCount < 0) {
+              valuesCount = count;
+            } else if (valuesCount != count) {
+              throw new JSONException("Columns have different length: " + valuesCount + " and " + count);
+            }
+            columns.add(column);
+          } while (nextSeparator(']'));
+        } else if ("types".equals(key)) {
+          types = readStringMap();
+        } else if ("names".equals(key)) {
+          names = readStringMap();
+        } else if ("colors".equals(key)) {
+          colors = readStringMap();
+        } else if ("y_scaled".equals(key)) {
+          yScaled = readBoolean();
+        } else if ("stacked".equals(key)) {
+          stacked = readBoolean();
+        } else if ("percentage".equals(key)) {
+          percentage = readBoolean();
+        } else {
+          skipValue();
+        }
+      } while (nextSeparator('}'));
+    }
+
+    if (types == null || names == null || colors == null || valuesCount < 0) {
+      throw new JSONException("Chart must contain columns, types, names and colors");
+    }
+
+    int graphsCount = 0;
+    for (String label : labels) {
+      if (ChartData.graphType(types.get(label)) >= 0) {
+        graphsCount++;
+      }
+    }
+
+    ChartData chart = new ChartData(graphsCount, valuesCount);
+    chart.yScaled = yScaled;
+    chart.stacked = stacked;
+    chart.percentage = percentage;
+    int graph = 0;
+    for (int i = 0; i < labels.size(); i++) {
+      String label = labels.get(i);
+      long[] column = columns.get(i);
+      columns.set(i, null); // let column be collected as soon as it's copied
+      int graphType = ChartData.graphType(types.get(label));
+
+      if (TYPE_X.equals(types.get(label))) {
+        System.arraycopy(column, 0, chart.timeline, 0, valuesCount);
+
+      } else if (graphType >= 0) {
+        chart.applyGraphType(graphType);
+        int[] values = chart.graphs[graph];
+        int max = 0;
+        for (int j = 0; j < valuesCount; j++) {
+          values[j] = (int) column[j];
+          if (values[j] > max) {
+            max = values[j];
+          }
+        }
+        chart.maximums[graph] = max;
+        if (!colors.containsKey(label) || !names.containsKey(label)) {
+          throw new JSONException("No name or color for column " + label);
+        }
+        chart.colors[graph] = Colors.parse(colors.get(label));
+        chart.names[graph] = names.get(label);
+        graph++;
+      }
+    }
+    chart.buildRangeIndex();
+    chart.buildStacks();
+    return chart;
+  }
+
+  /**
+   * Find bounds of top level objects in json array without parsing them,
+   * so every object can be read by its own reader in parallel.
+   *
+   * @param json   json bytes.
+   * @param length count of bytes.
+   * @return start and end (exclusive) offsets of every object.
+   */
+  static int[] objectBounds(final byte[] json, final int length) throws JSONException {
+    int[] bounds = new int[16];
+    int count = 0;
+    int depth = 0;
+    boolean inString = false;
+    for (int i = 0; i < length; i++) {
+      byte c = json[i];
+      if (inString) {
+        if (c == '\\') {
+          i++; // skip escaped char
+        } else if (c == '"') {
+          inString = false;
+        }
+      } else if (c == '"') {
+        inString = true;
+      } else if (c == '{' || c == '[') {
+        if (depth == 1 && c == '{') {
+          if (count == bounds.length) {
+            bounds = Arrays.copyOf(bounds, count * 2);
+          }
+          bounds[count++] = i;
+        }
+        depth++;
+      } else if (c == '}' || c == ']') {
+        depth--;
+        if (depth == 1 && c == '}') {
+          bounds[count++] = i + 1;
+        } else if (depth < 0) {
+          throw new JSONException("Unbalanced brackets at " + i);
+        }
+      }
+    }
+    if (depth != 0 || inString) {
+      throw new JSONException("Unterminated json");
+    }
+    return Arrays.copyOf(bounds, count);
+  }
+
+  /**
+   * Read object with string values, e.g. "names" or "colors".
+   *
+   * @return key to value map.
+   */
+  private Map<String, String> readStringMap() throws IOException, JSONException {
+    Map<String, String> map = new HashMap<>();
+    expect('{');
+    if (peek() == '}') {
+      position++;
+      return map;
+    }
+    do {
+      String key = readString();
+      expect(':');
+      map.put(key, readString());
+    } while (nextSeparator('}'));
+    return map;
+  }
+
+  /**
+   * Read separator between items of array or object.
+   *
+   * @param close closing bracket of current array or object.
+   * @return true if next item follows, false if closing bracket is read.
+   */
+  private boolean nextSeparator(final char close) throws IOException, JSONException {
+    int c = nextNonWhitespace();
+    if (c == ',') {
+      return true;
+    } else if (c == close) {
+      return false;
+    }
+    throw syntaxError("Expected ',' or '" + close + "'", c);
+  }
+
+  private long readLong() throws IOException, JSONException {
+    int c = nextNonWhitespace();
+    boolean negative = false;
+    if (c == '-') {
+      negative = true;
+      c = read();
+    }
+    if (c < '0' || c > '9') {
+      throw syntaxError("Expected number", c);
+    }
+    long value = 0;
+    while (c >= '0' && c <= '9') {
+      value = value * 10 + (c - '0');
+      c = read();
+    }
+    if (c == '.' || c == 'e' || c == 'E') {
+      // rare case of fractional number, parse it slowly and truncate like JSONArray.getLong()
+      StringBuilder number = new StringBuilder().append(negative ? -value : value);
+      while (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-' || (c >= '0' && c <= '9')) {
+        number.append((char) c);
+        c = read();
+      }
+      unread(c);
+      try {
+        return (long) Double.parseDouble(number.toString());
+      } catch (NumberFormatException e) {
+        throw new JSONException("Wrong number " + number);
+      }
+    }
+    unread(c);
+    return negative ? -value : value;
+  }
+
+  private boolean readBoolean() throws IOException, JSONException {
+    int c = nextNonWhitespace();
+    String literal = c == 't' ? "true" : "false";
+    if (c != literal.charAt(0)) {
+      throw syntaxError("Expected true or false", c);
+    }
+    for (int i = 1; i < literal.length(); i++) {
+      c = read();
+      if (c != literal.charAt(i)) {
+        throw syntaxError("Expected " + literal, c);
+      }
+    }
+    return literal.equals("true");
+  }
+
+  private String readString() throws IOException, JSONException {
+    expect('"');
+    int length = 0;
+    int highSurrogate = 0; // escaped high surrogate waiting for its low surrogate
+    int c;
+    while ((c = read()) != '"') {
+      if (c == END_OF_STREAM) {
+        throw syntaxError("Unterminated string", c);
+      }
+      if (highSurrogate != 0 && !(c == '\\' && peekRaw() == 'u')) {
+        length = appendCodePoint(highSurrogate, length); // unpaired, decoded as replacement char
+        highSurrogate = 0;
+      }
+      if (c == '\\') {
+        c = read();
+        switch (c) {
+          case 'b':
+            c = '\b';
+            break;
+          case 'f':
+            c = '\f';
+            break;
+          case 'n':
+            c = '\n';
+            break;
+          case 'r':
+            c = '\r';
+            break;
+          case 't':
+            c = '\t';
+            break;
+          case 'u':
+            int code = 0;
+            for (int i = 0; i < 4; i++) {
+              code = (code << 4) | Character.digit(read(), 16);
+            }
+            if (code < 0) {
+              throw new JSONException("Wrong unicode escape");
+            }
+            // surrogate pair is combined to one code point, so it's encoded as 4 bytes of UTF-8
+            if (highSurrogate != 0 && Character.isLowSurrogate((char) code)) {
+              code = Character.toCodePoint((char) highSurrogate, (char) code);
+              highSurrogate = 0;
+            } else {
+              if (highSurrogate != 0) {
+                length = appendCodePoint(highSurrogate, length);
+                highSurrogate = 0;
+              }
+              if (Character.isHighSurrogate((char) code)) {
+                highSurrogate = code;
+                continue;
+              }
+            }
+            length = appendCodePoint(code, length);
+            continue;
+          default:
+            // '"', '\\' and '/' stay as is
+            break;
+        }
+      }
+      if (length == stringBytes.length) {
+        stringBytes = Arrays.copyOf(stringBytes, stringBytes.length * 2);
+      }
+      stringBytes[length++] = (byte) c;
+    }
+    if (highSurrogate != 0) {
+      length = appendCodePoint(highSurrogate, length);
+    }
+    return new String(stringBytes, 0, length, "UTF-8");
+  }
+
+  /**
+   * Encode escaped char back to UTF-8, the whole string is decoded at once.
+   *
+   * @param code   code point.
+   * @param length count of bytes in stringBytes.
+   * @return new count of bytes.
+   */
+  private int appendCodePoint(final int code, int length) {
+    if (length + 4 > stringBytes.length) {
+      stringBytes = Arrays.copyOf(stringBytes, stringBytes.length * 2);
+    }
+    if (code < 0x80) {
+      stringBytes[length++] = (byte) code;
+    } else if (code < 0x800) {
+      stringBytes[length++] = (byte) (0xc0 | (code >> 6));
+      stringBytes[length++] = (byte) (0x80 | (code & 0x3f));
+    } else if (code < 0x10000) {
+      stringBytes[length++] = (byte) (0xe0 | (code >> 12));
+      stringBytes[length++] = (byte) (0x80 | ((code >> 6) & 0x3f));
+      stringBytes[length++] = (byte) (0x80 | (code & 0x3f));
+    } else {
+      stringBytes[length++] = (byte) (0xf0 | (code >> 18));
+      stringBytes[length++] = (byte) (0x80 | ((code >> 12) & 0x3f));
+      stringBytes[length++] = (byte) (0x80 | ((code >> 6) & 0x3f));
+      stringBytes[length++] = (byte) (0x80 | (code & 0x3f));
+    }
+    return length;
+  }
+
+  /**
+   * Skip any json value.
+   */
+  private void skipValue() throws IOException, JSONException {
+    int c = nextNonWhitespace();
+    if (c == '"') {
+      unread(c);
+      readString();
+    } else if (c == '{' || c == '[') {
+      char close = c == '{' ? '}' : ']';
+      if (peek() == close) {
+        position++;
+        return;
+      }
+      do {
+        if (close == '}') {
+          readString();
+          expect(':');
+        }
+        skipValue();
+      } while (nextSeparator(close));
+    } else {
+      // number, true, false or null
+      while (c != END_OF_STREAM && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+        c = read();
+      }
+      unread(c);
+    }
+  }
+
+  private void expect(final char expected) throws IOException, JSONException {
+    int c = nextNonWhitespace();
+    if (c != expected) {
+      throw syntaxError("Expected '" + expected + "'", c);
+    }
+  }
+
+  /**
+   * @return the next char without skipping whitespace, it stays in the buffer.
+   */
+  private int peekRaw() throws IOException {
+    int c = read();
+    unread(c);
+    return c;
+  }
+
+  private int peek() throws IOException {
+    int c = nextNonWhitespace();
+    unread(c);
+    return c;
+  }
+
+  private int nextNonWhitespace() throws IOException {
+    int c;
+    do {
+      c = read();
+    } while (isWhitespace(c));
+    return c;
+  }
+
+  private static boolean isWhitespace(final int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+  }
+
+  private int read() throws IOException {
+    if (position == limit) {
+      limit = in.read(buffer, 0, BUFFER_SIZE);
+      position = 0;
+      if (limit <= 0) {
+        limit = 0;
+        return END_OF_STREAM;
+      }
+    }
+    return buffer[position++] & 0xff;
+  }
+
+  /**
+   * Return last read char back to the buffer.
+   *
+   * @param c char returned by last read().
+   */
+  private void unread(final int c) {
+    if (c != END_OF_STREAM) {
+      position--;
+    }
+  }
+
+  private JSONException syntaxError(final String message, final int c) {
+    return new JSONException(message + " but found "
+        + (c == END_OF_STREAM ? "end of stream" : "'" + (char) c + "'"));
+  }
+}
@@ -0,0 +1,70 @@
+package com.filenkov.tgchart;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Color parser compatible with android.graphics.Color.parseColor(), so charts are parsed without Android.
+ */
+class Colors {
+  private static final Map<String, Integer> NAMES = new HashMap<>();
+
+  static {
+    NAMES.put("black", 0xff000000);
+    NAMES.put("darkgray", 0xff444444);
+    NAMES.put("gray", 0xff888888);
+    NAMES.put("lightgray", 0xffcccccc);
+    NAMES.put("white", 0xffffffff);
+    NAMES.put("red", 0xffff0000);
+    NAMES.put("green", 0xff00ff00);
+    NAMES.put("blue", 0xff0000ff);
+    NAMES.put("yellow", 0xffffff00);
+    NAMES.put("cyan", 0xff00ffff);
+    NAMES.put("magenta", 0xffff00ff);
+    NAMES.put("aqua", 0xff00ffff);
+    NAMES.put("fuchsia", 0xffff00ff);
+    NAMES.put("darkgrey", 0xff444444);
+    NAMES.put("grey", 0xff888888);
+    NAMES.put("lightgrey", 0xffcccccc);
+    NAMES.put("lime", 0xff00ff00);
+    NAMES.put("maroon", 0xff800000);
+    NAMES.put("navy", 0xff000080);
+    NAMES.put("olive", 0xff808000);
+    NAMES.put("purple", 0xff800080);
+    NAMES.put("silver", 0xffc0c0c0);
+    NAMES.put("teal", 0xff008080);
+  }
+
+  private Colors() {
+  }
+
+  /**
+   * Parse "#RRGGBB", "#AARRGGBB" or color name.
+   *
+   * @param color color string.
+   * @return ARGB color.
+   * @throws IllegalArgumentException if color can't be parsed.
+   */
+  static int parse(final String color) {
+    if (color.length() > 0 && color.charAt(0) == '#') {
+      long value;
+      try {
+        value = Long.parseLong(color.substring(1), 16);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Unknown color " + color);
+      }
+      if (color.length() == 7) {
+        return (int) (value | 0xff000000L);
+      } else if (color.length() == 9) {
+        return (int) value;
+      }
+    } else {
+      Integer value = NAMES.get(color.toLowerCase(Locale.ROOT));
+      if (value != null) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Unknown color " + color);
+  }
+}
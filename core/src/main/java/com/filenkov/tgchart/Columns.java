@@ -0,0 +1,56 @@
+package com.filenkov.tgchart;
+
+import java.io.IOException;
+
+/**
+ * Storage of chart columns kept out of plain heap arrays, see PagedStore and PackedStore.
+ */
+interface Columns {
+  /**
+   * @param index index of value.
+   * @return timestamp.
+   */
+  long time(int index);
+
+  /**
+   * @param graph index of graph.
+   * @param index index of value.
+   * @return graph value.
+   */
+  int value(int graph, int index);
+
+  /**
+   * @param graph index of graph.
+   * @param from  first index, inclusive.
+   * @param to    last index, exclusive.
+   * @return max value of graph in range.
+   */
+  int rangeMax(int graph, int from, int to);
+
+  /**
+   * @param graph index of graph.
+   * @param from  first index, inclusive.
+   * @param to    last index, exclusive.
+   * @return min value of graph in range.
+   */
+  int rangeMin(int graph, int from, int to);
+
+  /**
+   * Append min and max values of every bucket in range, see Decimator.buckets().
+   *
+   * @param graph      index of graph.
+   * @param from       first index, inclusive.
+   * @param to         last index, inclusive.
+   * @param bucketSize power of two bucket size.
+   * @param outIndices indices of kept values.
+   * @param outValues  kept values.
+   * @param count      count of already kept values.
+   * @return new count of kept values.
+   */
+  int buckets(int graph, int from, int to, int bucketSize, int[] outIndices, int[] outValues, int count);
+
+  /**
+   * Release storage, columns can't be used after that.
+   */
+  void close() throws IOException;
+}
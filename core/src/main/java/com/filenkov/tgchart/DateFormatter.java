@@ -0,0 +1,122 @@
+package com.filenkov.tgchart;
+
+import java.text.DateFormatSymbols;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Fast formatter of timestamps to "MMM d" and "ccc, MMM d" labels.
+ * Converts epoch day to civil date arithmetically, without Date and Calendar objects,
+ * and writes result to char buffer.
+ */
+class DateFormatter {
+  private static final long MS_PER_DAY = 86_400_000L;
+  /**
+   * Max length of formatted label.
+   */
+  static final int MAX_LENGTH = 32;
+
+  private final char[][] months;
+  private final char[][] weekdays;
+  private final TimeZone timeZone;
+
+  DateFormatter(final Locale locale) {
+    DateFormatSymbols symbols = DateFormatSymbols.getInstance(locale);
+    String[] shortMonths = symbols.getShortMonths();
+    months = new char[12][];
+    for (int i = 0; i < 12; i++) {
+      months[i] = truncate(shortMonths[i]);
+    }
+    String[] shortWeekdays = symbols.getShortWeekdays(); // starts from 1 (Sunday)
+    weekdays = new char[7][];
+    for (int i = 0; i < 7; i++) {
+      weekdays[i] = truncate(shortWeekdays[i + 1]);
+    }
+    timeZone = TimeZone.getDefault();
+  }
+
+  /**
+   * Format date as "MMM d".
+   *
+   * @param millis timestamp.
+   * @param out    buffer of at least MAX_LENGTH chars.
+   * @return count of written chars.
+   */
+  int formatDate(final long millis, final char[] out) {
+    return formatDate(epochDay(millis), out, 0);
+  }
+
+  /**
+   * Format date as "ccc, MMM d".
+   *
+   * @param millis timestamp.
+   * @param out    buffer of at least MAX_LENGTH chars.
+   * @return count of written chars.
+   */
+  int formatWeekdayDate(final long millis, final char[] out) {
+    long day = epochDay(millis);
+    char[] weekday = weekdays[(int) (day + 4 - floorDiv(day + 4, 7) * 7)]; // 1970-01-01 is Thursday
+    System.arraycopy(weekday, 0, out, 0, weekday.length);
+    int length = weekday.length;
+    out[length++] = ',';
+    out[length++] = ' ';
+    return formatDate(day, out, length);
+  }
+
+  /**
+   * @return all chars which labels of this formatter may contain.
+   */
+  String symbols() {
+    StringBuilder sb = new StringBuilder("0123456789, ");
+    for (char[] month : months) {
+      sb.append(month);
+    }
+    for (char[] weekday : weekdays) {
+      sb.append(weekday);
+    }
+    return sb.toString();
+  }
+
+  private long epochDay(final long millis) {
+    return floorDiv(millis + timeZone.getOffset(millis), MS_PER_DAY);
+  }
+
+  /**
+   * Write "MMM d" for epoch day, see http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+   */
+  private int formatDate(final long epochDay, final char[] out, final int offset) {
+    long z = epochDay + 719468;
+    long era = floorDiv(z, 146097);
+    long dayOfEra = z - era * 146097;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long mp = (5 * dayOfYear + 2) / 153;
+    int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+    int month = (int) (mp < 10 ? mp + 2 : mp - 10); // 0 is January
+
+    char[] monthChars = months[month];
+    System.arraycopy(monthChars, 0, out, offset, monthChars.length);
+    int length = offset + monthChars.length;
+    out[length++] = ' ';
+    if (day >= 10) {
+      out[length++] = (char) ('0' + day / 10);
+    }
+    out[length++] = (char) ('0' + day % 10);
+    return length;
+  }
+
+  /**
+   * Math.floorDiv() is not available before API 24.
+   */
+  private static long floorDiv(final long x, final long y) {
+    long q = x / y;
+    return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+  }
+
+  /**
+   * Limit name length, so any label fits MAX_LENGTH.
+   */
+  private static char[] truncate(final String name) {
+    return (name.length() > 12 ? name.substring(0, 12) : name).toCharArray();
+  }
+}
@@ -0,0 +1,68 @@
+package com.filenkov.tgchart;
+
+/**
+ * Small direct-mapped cache of date labels, labels are formatted only when they become visible.
+ */
+class DateLabels {
+  private final DateFormatter formatter;
+  private final boolean withWeekday;
+  private final int mask;
+  /**
+   * Absolute index of value by slot, so labels stay valid when live chart drops its oldest values.
+   */
+  private final long[] indexes;
+  /**
+   * Labels chars by slot, see label().
+   */
+  final char[][] chars;
+  /**
+   * Labels lengths by slot, see label().
+   */
+  final int[] lengths;
+  private ChartData chart;
+
+  /**
+   * @param formatter   date formatter.
+   * @param withWeekday true for "ccc, MMM d" labels, false for "MMM d" labels.
+   * @param size        cache size, power of two.
+   */
+  DateLabels(final DateFormatter formatter, final boolean withWeekday, final int size) {
+    this.formatter = formatter;
+    this.withWeekday = withWeekday;
+    mask = size - 1;
+    indexes = new long[size];
+    chars = new char[size][DateFormatter.MAX_LENGTH];
+    lengths = new int[size];
+    setChart(null);
+  }
+
+  /**
+   * Set chart which timestamps to format, clears the cache.
+   *
+   * @param chart chart.
+   */
+  void setChart(final ChartData chart) {
+    this.chart = chart;
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i] = -1;
+    }
+  }
+
+  /**
+   * Get label of timestamp, format it if it isn't in cache.
+   *
+   * @param index index of timestamp.
+   * @return slot of label in chars and lengths, valid until next call.
+   */
+  int label(final int index) {
+    long key = chart.firstIndex + index;
+    int slot = (int) key & mask;
+    if (indexes[slot] != key) {
+      lengths[slot] = withWeekday
+          ? formatter.formatWeekdayDate(chart.time(index), chars[slot])
+          : formatter.formatDate(chart.time(index), chars[slot]);
+      indexes[slot] = key;
+    }
+    return slot;
+  }
+}
@@ -0,0 +1,25 @@
+package com.filenkov.tgchart;
+
+/**
+ * Choice of step between timeline dates.
+ */
+class DateSteps {
+  private DateSteps() {
+  }
+
+  /**
+   * Largest power of two step, not less than 2, which keeps at least optimal count of dates in selection.
+   * Same as 2^floor(log2(selectionSize / optimalDatesCount)) without floating point math.
+   *
+   * @param selectionSize     count of indices in selection.
+   * @param optimalDatesCount count of dates which fit selection width.
+   * @return step in indices.
+   */
+  static int step(final int selectionSize, final int optimalDatesCount) {
+    int ratio = selectionSize / Math.max(1, optimalDatesCount);
+    if (ratio < 4) {
+      return 2;
+    }
+    return Integer.highestOneBit(ratio);
+  }
+}
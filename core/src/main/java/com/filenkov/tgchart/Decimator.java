@@ -0,0 +1,88 @@
+package com.filenkov.tgchart;
+
+/**
+ * Level of detail reduction of graph values before building pathes.
+ * Values are split into buckets of equal index width, every bucket keeps only its min and max values
+ * in original order, so spikes stay visible while count of points doesn't exceed 2 per bucket.
+ * Buckets are aligned to multiples of bucket size, not to the range start, so moving the range
+ * doesn't change which values are kept.
+ */
+class Decimator {
+  private Decimator() {
+  }
+
+  /**
+   * Choose bucket size to fit about one bucket (two points) per pixel.
+   *
+   * @param pointsCount count of points in range.
+   * @param width       width of range in pixels.
+   * @return power of two bucket size, 1 means no reduction is needed.
+   */
+  static int bucketSize(final int pointsCount, final float width) {
+    int bucketSize = 1;
+    while (bucketSize * width < pointsCount && bucketSize < pointsCount) {
+      bucketSize <<= 1;
+    }
+    return bucketSize;
+  }
+
+  /**
+   * @param from       first index, inclusive.
+   * @param to         last index, inclusive.
+   * @param bucketSize bucket size.
+   * @return max count of points kept from range by buckets() with first and last points.
+   */
+  static int capacity(final int from, final int to, final int bucketSize) {
+    return 2 * (to / bucketSize - from / bucketSize + 1) + 2;
+  }
+
+  /**
+   * Append min and max values of every bucket in range.
+   *
+   * @param values     graph values, values[0] is value of index offset.
+   * @param offset     index of values[0].
+   * @param from       first index, inclusive.
+   * @param to         last index, inclusive.
+   * @param bucketSize bucket size.
+   * @param outIndices indices of kept values.
+   * @param outValues  kept values.
+   * @param count      count of already kept values.
+   * @return new count of kept values.
+   */
+  static int buckets(final int[] values, final int offset, final int from, final int to, final int bucketSize,
+                     final int[] outIndices, final int[] outValues, int count) {
+    if (from > to) {
+      return count;
+    }
+    if (bucketSize == 1) {
+      for (int j = from; j <= to; j++) {
+        outIndices[count] = j;
+        outValues[count++] = values[j - offset];
+      }
+      return count;
+    }
+
+    for (int bucket = (from / bucketSize) * bucketSize; bucket <= to; bucket += bucketSize) {
+      int start = Math.max(bucket, from) - offset;
+      int end = Math.min(bucket + bucketSize - 1, to) - offset;
+      int minIndex = start;
+      int maxIndex = start;
+      for (int j = start + 1; j <= end; j++) {
+        if (values[j] < values[minIndex]) {
+          minIndex = j;
+        } else if (values[j] > values[maxIndex]) {
+          maxIndex = j;
+        }
+      }
+      int first = Math.min(minIndex, maxIndex);
+      int second = Math.max(minIndex, maxIndex);
+      outIndices[count] = first + offset;
+      outValues[count++] = values[first];
+      if (second != first) {
+        outIndices[count] = second + offset;
+        outValues[count++] = values[second];
+      }
+    }
+    return count;
+  }
+}
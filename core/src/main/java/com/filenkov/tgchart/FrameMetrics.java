@@ -0,0 +1,208 @@
+package com.filenkov.tgchart;
+
+/**
+ * Frame time metrics of one chart view: histograms of durations and counters of frames over budget.
+ * Recording is a few array updates without allocation, so metrics are always on.
+ * Metrics aren't synchronized, they are collected and read on the thread which draws the view:
+ * UI thread for views drawn in window, render thread for views drawn on their own thread.
+ */
+public class FrameMetrics {
+  /**
+   * Frame budget of 60 Hz display.
+   */
+  public static final long FRAME_BUDGET_NS = 16_666_667;
+  /**
+   * Max length of one summary line, see summary().
+   */
+  static final int SUMMARY_LENGTH = 128;
+
+  /**
+   * Histogram of durations with fixed buckets of 0.5 ms, the last bucket holds all longer durations.
+   */
+  public static class Histogram {
+    static final long BUCKET_NS = 500_000;
+    static final int BUCKETS_COUNT = 100;
+    private final int[] counts = new int[BUCKETS_COUNT];
+    private int count;
+    private int overBudgetCount;
+    private long totalNs;
+    private long maxNs;
+
+    void record(final long durationNs) {
+      long ns = Math.max(0, durationNs);
+      counts[(int) Math.min(ns / BUCKET_NS, BUCKETS_COUNT - 1)]++;
+      count++;
+      totalNs += ns;
+      maxNs = Math.max(maxNs, ns);
+      if (ns > FRAME_BUDGET_NS) {
+        overBudgetCount++;
+      }
+    }
+
+    void reset() {
+      for (int i = 0; i < BUCKETS_COUNT; i++) {
+        counts[i] = 0;
+      }
+      count = 0;
+      overBudgetCount = 0;
+      totalNs = 0;
+      maxNs = 0;
+    }
+
+    /**
+     * @return count of recorded durations.
+     */
+    public int count() {
+      return count;
+    }
+
+    /**
+     * @return count of durations longer than FRAME_BUDGET_NS.
+     */
+    public int overBudgetCount() {
+      return overBudgetCount;
+    }
+
+    public long maxNs() {
+      return maxNs;
+    }
+
+    public long averageNs() {
+      return count > 0 ? totalNs / count : 0;
+    }
+
+    /**
+     * @param percent percentile, 0..100.
+     * @return upper bound of bucket of percentile, or maxNs() if it's in the last bucket.
+     */
+    public long percentileNs(final float percent) {
+      if (count == 0) {
+        return 0;
+      }
+      int rank = Math.max(1, (int) Math.ceil(count * percent / 100));
+      int seen = 0;
+      for (int i = 0; i < BUCKETS_COUNT - 1; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min((i + 1) * BUCKET_NS, maxNs);
+        }
+      }
+      return maxNs;
+    }
+
+    /**
+     * @param bucket index of bucket, bucket i holds durations [i * 0.5 ms, (i + 1) * 0.5 ms).
+     * @return count of durations in bucket.
+     */
+    public int bucketCount(final int bucket) {
+      return counts[bucket];
+    }
+
+    public int bucketsCount() {
+      return BUCKETS_COUNT;
+    }
+  }
+
+  private final Histogram draw = new Histogram();
+  private final Histogram prepare = new Histogram();
+  private final Histogram tickLateness = new Histogram();
+  /**
+   * Display frames passed between animation ticks without a tick.
+   */
+  private int skippedFrames;
+
+  /**
+   * @return durations of onDraw().
+   */
+  public Histogram draw() {
+    return draw;
+  }
+
+  /**
+   * @return durations of path and vertex preparation on selection change.
+   */
+  public Histogram prepare() {
+    return prepare;
+  }
+
+  /**
+   * @return delays from vsync to start of animation tick.
+   */
+  public Histogram tickLateness() {
+    return tickLateness;
+  }
+
+  /**
+   * @return count of display frames missed by animation.
+   */
+  public int skippedFrames() {
+    return skippedFrames;
+  }
+
+  public void reset() {
+    draw.reset();
+    prepare.reset();
+    tickLateness.reset();
+    skippedFrames = 0;
+  }
+
+  void recordDraw(final long durationNs) {
+    draw.record(durationNs);
+  }
+
+  void recordPrepare(final long durationNs) {
+    prepare.record(durationNs);
+  }
+
+  /**
+   * Record animation tick.
+   *
+   * @param latenessNs delay from vsync to tick.
+   * @param intervalNs time since the previous tick of the same animation, 0 for the first one.
+   */
+  void recordTick(final long latenessNs, final long intervalNs) {
+    tickLateness.record(latenessNs);
+    if (intervalNs > FRAME_BUDGET_NS + FRAME_BUDGET_NS / 2) {
+      skippedFrames += (int) ((intervalNs + FRAME_BUDGET_NS / 2) / FRAME_BUDGET_NS) - 1;
+    }
+  }
+
+  /**
+   * Write one line summary of histogram like "draw 120 p50 1.5 p95 4.0 max 18.5 ms, 2 slow".
+   *
+   * @param name      name of histogram.
+   * @param histogram histogram.
+   * @param out       buffer of at least SUMMARY_LENGTH chars.
+   * @return count of written chars.
+   */
+  static int summary(final String name, final Histogram histogram, final char[] out) {
+    int p = append(name, out, 0);
+    out[p++] = ' ';
+    p += IntFormatter.format(histogram.count(), out, p);
+    p = append(" p50 ", out, p);
+    p = appendMs(histogram.percentileNs(50), out, p);
+    p = append(" p95 ", out, p);
+    p = appendMs(histogram.percentileNs(95), out, p);
+    p = append(" max ", out, p);
+    p = appendMs(histogram.maxNs(), out, p);
+    p = append(" ms, ", out, p);
+    p += IntFormatter.format(histogram.overBudgetCount(), out, p);
+    return append(" slow", out, p);
+  }
+
+  static int append(final String s, final char[] out, final int position) {
+    s.getChars(0, s.length(), out, position);
+    return position + s.length();
+  }
+
+  /**
+   * Append duration in ms with one decimal digit.
+   */
+  static int appendMs(final long ns, final char[] out, final int position) {
+    long tenths = (ns + 50_000) / 100_000;
+    int p = position + IntFormatter.format(tenths / 10, out, position);
+    out[p++] = '.';
+    out[p++] = (char) ('0' + tenths % 10);
+    return p;
+  }
+}
@@ -0,0 +1,55 @@
+package com.filenkov.tgchart;
+
+/**
+ * Formats integers into reusable char buffers, so labels are drawn without String allocation.
+ */
+class IntFormatter {
+  /**
+   * Buffer size enough for any long value with sign.
+   */
+  static final int MAX_LENGTH = 20;
+
+  private IntFormatter() {
+  }
+
+  /**
+   * Write decimal representation of value to the beginning of buffer.
+   *
+   * @param value value.
+   * @param out   buffer of at least MAX_LENGTH chars.
+   * @return count of written chars.
+   */
+  static int format(final long value, final char[] out) {
+    return format(value, out, 0);
+  }
+
+  /**
+   * Write decimal representation of value to buffer.
+   *
+   * @param value  value.
+   * @param out    buffer.
+   * @param offset position of the first char, at least MAX_LENGTH chars should be available after it.
+   * @return count of written chars.
+   */
+  static int format(final long value, final char[] out, final int offset) {
+    if (value == Long.MIN_VALUE) {
+      String s = String.valueOf(value); // the only value which can't be negated
+      s.getChars(0, s.length(), out, offset);
+      return s.length();
+    }
+    long v = Math.abs(value);
+    int length = value < 0 ? 2 : 1;
+    for (long rest = v / 10; rest > 0; rest /= 10) {
+      length++;
+    }
+    int i = offset + length;
+    do {
+      out[--i] = (char) ('0' + v % 10);
+      v /= 10;
+    } while (v > 0);
+    if (value < 0) {
+      out[offset] = '-';
+    }
+    return length;
+  }
+}
@@ -0,0 +1,42 @@
+package com.filenkov.tgchart;
+
+/**
+ * Line segments of a graph in view space for Canvas.drawLines().
+ */
+class LineVertices {
+  private LineVertices() {
+  }
+
+  /**
+   * Map points to view space and write them as line segments, 4 floats per segment.
+   * View x is left + index * stepX, view y is bottom - value * scaleY.
+   *
+   * @param indices indices of points.
+   * @param values  values of points.
+   * @param count   count of points.
+   * @param left    x of index 0.
+   * @param stepX   width of one index.
+   * @param bottom  y of value 0.
+   * @param scaleY  height of one value.
+   * @param out     vertices, at least 4 * (count - 1) floats.
+   * @return count of written floats.
+   */
+  static int fill(final int[] indices, final int[] values, final int count,
+                  final float left, final float stepX, final float bottom, final float scaleY, final float[] out) {
+    if (count == 0) {
+      return 0;
+    }
+    int p = 0;
+    float x = left + indices[0] * stepX;
+    float y = bottom - values[0] * scaleY;
+    for (int k = 1; k < count; k++) {
+      out[p++] = x;
+      out[p++] = y;
+      x = left + indices[k] * stepX;
+      y = bottom - values[k] * scaleY;
+      out[p++] = x;
+      out[p++] = y;
+    }
+    return p;
+  }
+}
@@ -0,0 +1,355 @@
+package com.filenkov.tgchart;
+
+import java.util.Arrays;
+
+/**
+ * Compressed heap columns of a chart.
+ * Timeline collapses to start and step when timestamps are uniform, otherwise it keeps zigzag varint
+ * deltas of deltas. Values keep zigzag varint deltas. Both are split into blocks of BLOCK_SIZE values
+ * with absolute first value, so every block is decoded on its own and a range costs only the blocks it covers.
+ */
+class PackedStore implements Columns {
+  /**
+   * Values of graphs read block by block, so columns are encoded without keeping them on heap.
+   */
+  interface Source {
+    /**
+     * @param start first index of block.
+     * @param end   last index of block, exclusive.
+     * @param out   values of every graph, out[graph][j - start] is value at j.
+     */
+    void read(int start, int end, int[][] out);
+  }
+
+  static final int BLOCK_SHIFT = BlockSummary.SHIFT;
+  static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+  final int graphsCount;
+  final int valuesCount;
+  private final int blocksCount;
+
+  private final long timeStart;
+  private final long timeStep;
+  /**
+   * First timestamp and first step of every timeline block, null for uniform timeline.
+   */
+  private final long[] timeBases;
+  private final long[] timeSteps;
+  /**
+   * Offsets of timeline blocks in timeData, the last one is the end of data.
+   */
+  private final int[] timeOffsets;
+  private final byte[] timeData;
+
+  /**
+   * First value of every block by graph.
+   */
+  private final int[][] valueBases;
+  /**
+   * Offsets of blocks in valueData by graph, the last one is the end of data.
+   */
+  private final int[][] valueOffsets;
+  /**
+   * Encoded values by graph, arrays may be longer than data after update().
+   */
+  private final byte[][] valueData;
+  private final BlockSummary[] summaries;
+  /**
+   * Values of one block of every graph read from Source.
+   */
+  private final int[][] blockValues;
+
+  /**
+   * Last decoded block, most of reads go to the same block.
+   */
+  private final int[] decodedValues = new int[BLOCK_SIZE];
+  private int decodedGraph = -1;
+  private int decodedBlock = -1;
+  private final long[] decodedTimes = new long[BLOCK_SIZE];
+  private int decodedTimeBlock = -1;
+
+  /**
+   * Encode columns.
+   *
+   * @param timeline    timestamps, null for columns without timeline, their time() is 0.
+   * @param graphs      values of every graph.
+   * @param valuesCount count of values.
+   */
+  PackedStore(final long[] timeline, final int[][] graphs, final int valuesCount) {
+    this(timeline, arraySource(graphs), graphs.length, valuesCount);
+  }
+
+  /**
+   * Encode columns read block by block.
+   *
+   * @param timeline    timestamps, null for columns without timeline, their time() is 0.
+   * @param source      values of every graph.
+   * @param graphsCount count of graphs.
+   * @param valuesCount count of values.
+   */
+  PackedStore(final long[] timeline, final Source source, final int graphsCount, final int valuesCount) {
+    this.graphsCount = graphsCount;
+    this.valuesCount = valuesCount;
+    blocksCount = (valuesCount + BLOCK_MASK) >> BLOCK_SHIFT;
+
+    boolean uniform = true;
+    long step = timeline != null && valuesCount > 1 ? timeline[1] - timeline[0] : 0;
+    for (int j = 2; timeline != null && j < valuesCount && uniform; j++) {
+      uniform = timeline[j] - timeline[j - 1] == step;
+    }
+    timeStart = timeline != null && valuesCount > 0 ? timeline[0] : 0;
+    timeStep = step;
+    if (uniform) {
+      timeBases = null;
+      timeSteps = null;
+      timeOffsets = null;
+      timeData = null;
+    } else {
+      timeBases = new long[blocksCount];
+      timeSteps = new long[blocksCount];
+      timeOffsets = new int[blocksCount + 1];
+      byte[] data = new byte[valuesCount * 10];
+      int length = 0;
+      for (int b = 0; b < blocksCount; b++) {
+        int start = b << BLOCK_SHIFT;
+        int end = Math.min(start + BLOCK_SIZE, valuesCount);
+        timeBases[b] = timeline[start];
+        timeSteps[b] = start + 1 < end ? timeline[start + 1] - timeline[start] : 0;
+        timeOffsets[b] = length;
+        for (int j = start + 2; j < end; j++) {
+          long delta = (timeline[j] - timeline[j - 1]) - (timeline[j - 1] - timeline[j - 2]);
+          length = writeVarLong(data, length, (delta << 1) ^ (delta >> 63));
+        }
+      }
+      timeOffsets[blocksCount] = length;
+      timeData = Arrays.copyOf(data, length);
+    }
+
+    valueBases = new int[graphsCount][blocksCount];
+    valueOffsets = new int[graphsCount][blocksCount + 1];
+    valueData = new byte[graphsCount][BLOCK_SIZE * 5];
+    blockValues = new int[graphsCount][BLOCK_SIZE];
+    encodeValues(source, 0);
+    for (int i = 0; i < graphsCount; i++) {
+      valueData[i] = Arrays.copyOf(valueData[i], valueOffsets[i][blocksCount]);
+    }
+
+    summaries = new BlockSummary[graphsCount];
+    for (int i = 0; i < graphsCount; i++) {
+      summaries[i] = new BlockSummary(this, i, valuesCount);
+    }
+  }
+
+  /**
+   * Encode new values of graphs in place, buffers grow only when new data is longer. Timeline isn't changed.
+   *
+   * @param source     values of every graph.
+   * @param firstGraph first graph to encode, values of graphs below it aren't changed.
+   */
+  synchronized void update(final Source source, final int firstGraph) {
+    encodeValues(source, firstGraph);
+    decodedGraph = -1;
+    decodedBlock = -1;
+    for (int i = firstGraph; i < graphsCount; i++) {
+      summaries[i].update();
+    }
+  }
+
+  @Override
+  public synchronized long time(final int index) {
+    if (timeData == null) {
+      return timeStart + index * timeStep;
+    }
+    int block = index >> BLOCK_SHIFT;
+    if (decodedTimeBlock != block) {
+      decodeTimes(block);
+    }
+    return decodedTimes[index & BLOCK_MASK];
+  }
+
+  @Override
+  public synchronized int value(final int graph, final int index) {
+    int block = index >> BLOCK_SHIFT;
+    if (decodedGraph != graph || decodedBlock != block) {
+      decodeValues(graph, block);
+    }
+    return decodedValues[index & BLOCK_MASK];
+  }
+
+  @Override
+  public int rangeMax(final int graph, final int from, final int to) {
+    return summaries[graph].max(from, to);
+  }
+
+  @Override
+  public int rangeMin(final int graph, final int from, final int to) {
+    return summaries[graph].min(from, to);
+  }
+
+  /**
+   * Buckets not smaller than a block are taken from the summary, smaller buckets
+   * are taken from blocks decoded one by one into reusable buffer.
+   */
+  @Override
+  public synchronized int buckets(final int graph, final int from, final int to, final int bucketSize,
+                                  final int[] outIndices, final int[] outValues, final int count) {
+    if (bucketSize >= BLOCK_SIZE) {
+      return summaries[graph].buckets(from, to, bucketSize, outIndices, outValues, count);
+    }
+    int result = count;
+    // block bounds are multiples of bucket size, so a bucket never spans two blocks
+    for (int start = from; start <= to; ) {
+      int block = start >> BLOCK_SHIFT;
+      int offset = block << BLOCK_SHIFT;
+      int end = Math.min(offset + BLOCK_MASK, to);
+      if (decodedGraph != graph || decodedBlock != block) {
+        decodeValues(graph, block);
+      }
+      result = Decimator.buckets(decodedValues, offset, start, end, bucketSize, outIndices, outValues, result);
+      start = end + 1;
+    }
+    return result;
+  }
+
+  @Override
+  public void close() {
+    // heap only, nothing to release
+  }
+
+  /**
+   * @return size of encoded columns in bytes, without the summary.
+   */
+  long packedSize() {
+    long size = 16;
+    if (timeData != null) {
+      size += timeBases.length * 8L + timeSteps.length * 8L + timeOffsets.length * 4L + timeData.length;
+    }
+    for (int i = 0; i < graphsCount; i++) {
+      size += valueBases[i].length * 4L + valueOffsets[i].length * 4L + valueOffsets[i][blocksCount];
+    }
+    return size;
+  }
+
+  /**
+   * Write size summary like "packed 5541 B 2.3 B/point" for debug overlay, a point is one value of one graph.
+   *
+   * @param out buffer of at least FrameMetrics.SUMMARY_LENGTH chars.
+   * @return count of written chars.
+   */
+  int sizeSummary(final char[] out) {
+    long size = packedSize();
+    long points = Math.max(1L, (long) valuesCount * graphsCount);
+    long tenths = (size * 10 + points / 2) / points;
+    int p = FrameMetrics.append("packed ", out, 0);
+    p += IntFormatter.format(size, out, p);
+    p = FrameMetrics.append(" B ", out, p);
+    p += IntFormatter.format(tenths / 10, out, p);
+    out[p++] = '.';
+    out[p++] = (char) ('0' + tenths % 10);
+    return FrameMetrics.append(" B/point", out, p);
+  }
+
+  /**
+   * Write zigzag varint deltas of every block of graphs from firstGraph.
+   */
+  private void encodeValues(final Source source, final int firstGraph) {
+    for (int b = 0; b < blocksCount; b++) {
+      int start = b << BLOCK_SHIFT;
+      int end = Math.min(start + BLOCK_SIZE, valuesCount);
+      source.read(start, end, blockValues);
+      for (int i = firstGraph; i < graphsCount; i++) {
+        int[] values = blockValues[i];
+        int length = valueOffsets[i][b];
+        if (valueData[i].length < length + (end - start) * 5) {
+          valueData[i] = Arrays.copyOf(valueData[i], Math.max(valueData[i].length * 2, length + BLOCK_SIZE * 5));
+        }
+        byte[] data = valueData[i];
+        valueBases[i][b] = values[0];
+        for (int k = 1; k < end - start; k++) {
+          int delta = values[k] - values[k - 1]; // may overflow, decoding overflows back
+          length = writeVarInt(data, length, (delta << 1) ^ (delta >> 31));
+        }
+        valueOffsets[i][b + 1] = length;
+      }
+    }
+  }
+
+  /**
+   * @return source reading columns on heap.
+   */
+  private static Source arraySource(final int[][] graphs) {
+    return new Source() {
+      @Override
+      public void read(final int start, final int end, final int[][] out) {
+        for (int i = 0; i < graphs.length; i++) {
+          System.arraycopy(graphs[i], start, out[i], 0, end - start);
+        }
+      }
+    };
+  }
+
+  private void decodeValues(final int graph, final int block) {
+    byte[] data = valueData[graph];
+    int position = valueOffsets[graph][block];
+    int count = Math.min(BLOCK_SIZE, valuesCount - (block << BLOCK_SHIFT));
+    int value = valueBases[graph][block];
+    decodedValues[0] = value;
+    for (int k = 1; k < count; k++) {
+      int zigzag = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = data[position++];
+        zigzag |= (b & 0x7f) << shift;
+        shift += 7;
+      } while (b < 0);
+      value += (zigzag >>> 1) ^ -(zigzag & 1);
+      decodedValues[k] = value;
+    }
+    decodedGraph = graph;
+    decodedBlock = block;
+  }
+
+  private void decodeTimes(final int block) {
+    int position = timeOffsets[block];
+    int count = Math.min(BLOCK_SIZE, valuesCount - (block << BLOCK_SHIFT));
+    long time = timeBases[block];
+    long step = timeSteps[block];
+    decodedTimes[0] = time;
+    for (int k = 1; k < count; k++) {
+      if (k > 1) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = timeData[position++];
+          zigzag |= (long) (b & 0x7f) << shift;
+          shift += 7;
+        } while (b < 0);
+        step += (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+      time += step;
+      decodedTimes[k] = time;
+    }
+    decodedTimeBlock = block;
+  }
+
+  private static int writeVarInt(final byte[] data, int position, int value) {
+    while ((value & ~0x7f) != 0) {
+      data[position++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    data[position++] = (byte) value;
+    return position;
+  }
+
+  private static int writeVarLong(final byte[] data, int position, long value) {
+    while ((value & ~0x7fL) != 0) {
+      data[position++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    data[position++] = (byte) value;
+    return position;
+  }
+}
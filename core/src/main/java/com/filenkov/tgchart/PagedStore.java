@@ -0,0 +1,209 @@
+package com.filenkov.tgchart;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Out-of-heap column store of a long chart.
+ * Columns are kept in a little-endian file in app storage with the same layout as a chart block
+ * of ChartDataFile: long[valuesCount] timeline, then int[valuesCount] for every graph aligned to 8 bytes.
+ * Columns start at offset, so the file may begin with a header.
+ * The file is mapped by chunks of CHUNK_SIZE values only when they are accessed,
+ * count of mapped chunks is bounded and the least recently used chunk is dropped first.
+ * Heap BlockSummary of every graph answers range queries and decimation of wide ranges
+ * without touching the file.
+ */
+class PagedStore implements Columns {
+  static final int CHUNK_SHIFT = 16;
+  static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  /**
+   * Default bound of mapped chunks, 32 chunks of graph values are 8 Mb of address space.
+   */
+  static final int DEFAULT_MAX_CHUNKS = 32;
+
+  final int graphsCount;
+  final int valuesCount;
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final long offset;
+  private final int chunksCount;
+  private final int maxChunks;
+  /**
+   * Mapped chunks by column (0 is timeline, i + 1 is graph i) and chunk index, null if not mapped.
+   */
+  private final MappedByteBuffer[][] chunks;
+  /**
+   * Access stamp of every mapped chunk, the smallest one is evicted first.
+   */
+  private final long[][] chunkStamps;
+  private long stamp = 0;
+  private int mappedCount = 0;
+
+  private final BlockSummary[] summaries;
+  /**
+   * Reusable values of one chunk for decimation.
+   */
+  private int[] chunkValues;
+
+  /**
+   * Open columns file and build the summary. Reads the whole file once, so should be called in background.
+   *
+   * @param path        columns file.
+   * @param offset      position of timeline in file, aligned to 8 bytes.
+   * @param graphsCount count of graphs.
+   * @param valuesCount count of values in every graph.
+   * @param maxChunks   max count of mapped chunks.
+   */
+  PagedStore(final File path, final long offset, final int graphsCount, final int valuesCount, final int maxChunks)
+      throws IOException {
+    this.offset = offset;
+    this.graphsCount = graphsCount;
+    this.valuesCount = valuesCount;
+    this.maxChunks = Math.max(2, maxChunks);
+    chunksCount = (valuesCount + CHUNK_MASK) >> CHUNK_SHIFT;
+    file = new RandomAccessFile(path, "r");
+    channel = file.getChannel();
+    if (channel.size() < columnOffset(graphsCount + 1)) {
+      close();
+      throw new IOException("Columns file is too short: " + path);
+    }
+    chunks = new MappedByteBuffer[graphsCount + 1][chunksCount];
+    chunkStamps = new long[graphsCount + 1][chunksCount];
+
+    summaries = new BlockSummary[graphsCount];
+    for (int i = 0; i < graphsCount; i++) {
+      summaries[i] = new BlockSummary(this, i, valuesCount);
+    }
+  }
+
+  @Override
+  public long time(final int index) {
+    return chunk(0, index >> CHUNK_SHIFT).getLong((index & CHUNK_MASK) << 3);
+  }
+
+  @Override
+  public int value(final int graph, final int index) {
+    return chunk(graph + 1, index >> CHUNK_SHIFT).getInt((index & CHUNK_MASK) << 2);
+  }
+
+  @Override
+  public int rangeMax(final int graph, final int from, final int to) {
+    return summaries[graph].max(from, to);
+  }
+
+  @Override
+  public int rangeMin(final int graph, final int from, final int to) {
+    return summaries[graph].min(from, to);
+  }
+
+  /**
+   * Buckets not smaller than BlockSummary.SIZE are taken from the summary, so only the chunks
+   * at range edges are mapped, smaller buckets map the chunks of the range.
+   */
+  @Override
+  public synchronized int buckets(final int graph, final int from, final int to, final int bucketSize,
+                                  final int[] outIndices, final int[] outValues, final int count) {
+    if (bucketSize >= BlockSummary.SIZE) {
+      return summaries[graph].buckets(from, to, bucketSize, outIndices, outValues, count);
+    }
+
+    if (chunkValues == null) {
+      chunkValues = new int[CHUNK_SIZE];
+    }
+    int result = count;
+    // chunk bounds are multiples of bucket size, so a bucket never spans two chunks
+    for (int start = from; start <= to; ) {
+      int offset = start & ~CHUNK_MASK;
+      int end = Math.min(offset + CHUNK_MASK, to);
+      MappedByteBuffer buffer = chunk(graph + 1, offset >> CHUNK_SHIFT);
+      for (int j = start; j <= end; j++) {
+        chunkValues[j - offset] = buffer.getInt((j - offset) << 2);
+      }
+      result = Decimator.buckets(chunkValues, offset, start, end, bucketSize, outIndices, outValues, result);
+      start = end + 1;
+    }
+    return result;
+  }
+
+  /**
+   * Drop all mappings and close the file.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (chunks != null) {
+      for (MappedByteBuffer[] column : chunks) {
+        for (int i = 0; i < column.length; i++) {
+          column[i] = null;
+        }
+      }
+    }
+    mappedCount = 0;
+    channel.close();
+    file.close();
+  }
+
+  /**
+   * Get mapped chunk, map it and evict the least recently used chunk if needed.
+   *
+   * @param column column, 0 is timeline, i + 1 is graph i.
+   * @param chunk  index of chunk.
+   * @return little-endian chunk buffer.
+   */
+  private synchronized MappedByteBuffer chunk(final int column, final int chunk) {
+    MappedByteBuffer buffer = chunks[column][chunk];
+    if (buffer == null) {
+      if (mappedCount == maxChunks) {
+        evict();
+      }
+      int valueSize = column == 0 ? 8 : 4;
+      long position = columnOffset(column) + (long) chunk * CHUNK_SIZE * valueSize;
+      int size = Math.min(CHUNK_SIZE, valuesCount - chunk * CHUNK_SIZE) * valueSize;
+      try {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+      } catch (IOException e) {
+        throw new IllegalStateException("Can't map chunk " + chunk + " of column " + column, e);
+      }
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      chunks[column][chunk] = buffer;
+      mappedCount++;
+    }
+    chunkStamps[column][chunk] = ++stamp;
+    return buffer;
+  }
+
+  /**
+   * Drop the least recently used chunk. Mapping itself is released when the buffer is collected.
+   */
+  private void evict() {
+    int oldestColumn = -1;
+    int oldestChunk = -1;
+    long oldestStamp = Long.MAX_VALUE;
+    for (int column = 0; column < chunks.length; column++) {
+      for (int chunk = 0; chunk < chunksCount; chunk++) {
+        if (chunks[column][chunk] != null && chunkStamps[column][chunk] < oldestStamp) {
+          oldestStamp = chunkStamps[column][chunk];
+          oldestColumn = column;
+          oldestChunk = chunk;
+        }
+      }
+    }
+    chunks[oldestColumn][oldestChunk] = null;
+    mappedCount--;
+  }
+
+  /**
+   * @param column column, 0 is timeline, i + 1 is graph i.
+   * @return offset of column in file, column graphsCount + 1 gives length of the file.
+   */
+  private long columnOffset(final int column) {
+    if (column == 0) {
+      return offset;
+    }
+    return offset + (long) valuesCount * 8 + (long) (column - 1) * (((long) valuesCount * 4 + 7) & ~7);
+  }
+}
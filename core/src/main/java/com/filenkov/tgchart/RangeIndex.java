@@ -0,0 +1,90 @@
+package com.filenkov.tgchart;
+
+/**
+ * Segment tree over graph values.
+ * Answers min and max of any values range in O(log n), built in O(n), single values are updated in O(log n).
+ */
+class RangeIndex {
+  private final int size;
+  /**
+   * Tree nodes, leaves are stored at [size, 2 * size), node i covers nodes 2i and 2i + 1.
+   */
+  private final int[] max;
+  private final int[] min;
+
+  RangeIndex(final int[] values, final int count) {
+    size = Math.max(1, count);
+    max = new int[2 * size];
+    min = new int[2 * size];
+    setValues(values, count);
+  }
+
+  /**
+   * Replace all values in O(n) without allocation.
+   *
+   * @param values new values.
+   * @param count  count of values, not more than count of the index.
+   */
+  void setValues(final int[] values, final int count) {
+    for (int i = 0; i < count; i++) {
+      max[size + i] = values[i];
+      min[size + i] = values[i];
+    }
+    for (int i = size - 1; i > 0; i--) {
+      max[i] = Math.max(max[2 * i], max[2 * i + 1]);
+      min[i] = Math.min(min[2 * i], min[2 * i + 1]);
+    }
+  }
+
+  /**
+   * Replace one value in O(log n).
+   *
+   * @param index index of value.
+   * @param value new value.
+   */
+  void set(final int index, final int value) {
+    int i = size + index;
+    max[i] = value;
+    min[i] = value;
+    for (i >>= 1; i > 0; i >>= 1) {
+      max[i] = Math.max(max[2 * i], max[2 * i + 1]);
+      min[i] = Math.min(min[2 * i], min[2 * i + 1]);
+    }
+  }
+
+  /**
+   * @param from first index, inclusive.
+   * @param to   last index, exclusive.
+   * @return max value in range or Integer.MIN_VALUE for empty range.
+   */
+  int max(final int from, final int to) {
+    int result = Integer.MIN_VALUE;
+    for (int l = from + size, r = to + size; l < r; l >>= 1, r >>= 1) {
+      if ((l & 1) == 1) {
+        result = Math.max(result, max[l++]);
+      }
+      if ((r & 1) == 1) {
+        result = Math.max(result, max[--r]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param from first index, inclusive.
+   * @param to   last index, exclusive.
+   * @return min value in range or Integer.MAX_VALUE for empty range.
+   */
+  int min(final int from, final int to) {
+    int result = Integer.MAX_VALUE;
+    for (int l = from + size, r = to + size; l < r; l >>= 1, r >>= 1) {
+      if ((l & 1) == 1) {
+        result = Math.min(result, min[l++]);
+      }
+      if ((r & 1) == 1) {
+        result = Math.min(result, min[--r]);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,143 @@
+package com.filenkov.tgchart;
+
+/**
+ * Bounded columns of a live chart, the oldest values are dropped when capacity is reached.
+ * Every value is written twice, at slot and slot + capacity, so any window of the ring is a plain
+ * array range and is read without wrapping. Min and max trees are updated in O(log n) on append.
+ * Buckets of buckets() are aligned to absolute index of value (count of values appended before it),
+ * so decimated pathes don't change when the oldest values are dropped.
+ * Not thread-safe, should be used on UI thread.
+ */
+class RingStore implements Columns {
+  /**
+   * Absolute indices are reduced modulo ALIGNMENT, it's a multiple of any bucket size.
+   */
+  private static final int ALIGNMENT = 1 << 30;
+
+  final int graphsCount;
+  final int capacity;
+  private final long[] times;
+  private final int[][] values;
+  private final RangeIndex[] ranges;
+  /**
+   * Slot of the oldest value.
+   */
+  private int head = 0;
+  private int size = 0;
+  /**
+   * Absolute index of the oldest value.
+   */
+  private long first = 0;
+
+  /**
+   * @param graphsCount count of graphs.
+   * @param capacity    max count of values.
+   */
+  RingStore(final int graphsCount, final int capacity) {
+    if (capacity < 2 || capacity >= ALIGNMENT) {
+      throw new IllegalArgumentException("Wrong capacity " + capacity);
+    }
+    this.graphsCount = graphsCount;
+    this.capacity = capacity;
+    times = new long[capacity];
+    values = new int[graphsCount][2 * capacity];
+    ranges = new RangeIndex[graphsCount];
+    int[] empty = new int[capacity];
+    for (int i = 0; i < graphsCount; i++) {
+      ranges[i] = new RangeIndex(empty, capacity);
+    }
+  }
+
+  /**
+   * Append values, drop the oldest ones if ring is full.
+   *
+   * @param timestamp timestamp.
+   * @param graphs    value of every graph.
+   * @return true if the oldest values were dropped.
+   */
+  boolean append(final long timestamp, final int[] graphs) {
+    int slot;
+    boolean dropped = size == capacity;
+    if (dropped) {
+      slot = head;
+      head = head + 1 == capacity ? 0 : head + 1;
+      first++;
+    } else {
+      slot = head + size < capacity ? head + size : head + size - capacity;
+      size++;
+    }
+    times[slot] = timestamp;
+    for (int i = 0; i < graphsCount; i++) {
+      values[i][slot] = graphs[i];
+      values[i][slot + capacity] = graphs[i];
+      ranges[i].set(slot, graphs[i]);
+    }
+    return dropped;
+  }
+
+  /**
+   * @return count of values.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return absolute index of the oldest value.
+   */
+  long first() {
+    return first;
+  }
+
+  @Override
+  public long time(final int index) {
+    int slot = head + index;
+    return times[slot < capacity ? slot : slot - capacity];
+  }
+
+  @Override
+  public int value(final int graph, final int index) {
+    return values[graph][head + index];
+  }
+
+  @Override
+  public int rangeMax(final int graph, final int from, final int to) {
+    int start = head + from;
+    int end = head + to;
+    if (end <= capacity) {
+      return ranges[graph].max(start, end);
+    } else if (start >= capacity) {
+      return ranges[graph].max(start - capacity, end - capacity);
+    }
+    return Math.max(ranges[graph].max(start, capacity), ranges[graph].max(0, end - capacity));
+  }
+
+  @Override
+  public int rangeMin(final int graph, final int from, final int to) {
+    int start = head + from;
+    int end = head + to;
+    if (end <= capacity) {
+      return ranges[graph].min(start, end);
+    } else if (start >= capacity) {
+      return ranges[graph].min(start - capacity, end - capacity);
+    }
+    return Math.min(ranges[graph].min(start, capacity), ranges[graph].min(0, end - capacity));
+  }
+
+  @Override
+  public int buckets(final int graph, final int from, final int to, final int bucketSize,
+                     final int[] outIndices, final int[] outValues, final int count) {
+    int shift = (int) (first & (ALIGNMENT - 1));
+    int result = Decimator.buckets(values[graph], shift - head, shift + from, shift + to, bucketSize,
+        outIndices, outValues, count);
+    for (int k = count; k < result; k++) {
+      outIndices[k] -= shift;
+    }
+    return result;
+  }
+
+  @Override
+  public void close() {
+    // heap only, nothing to release
+  }
+}
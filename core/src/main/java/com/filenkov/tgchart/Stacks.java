@@ -0,0 +1,145 @@
+package com.filenkov.tgchart;
+
+/**
+ * Cumulative sums of shown graphs of a stacked chart: sum of graph i at index j is sum of values
+ * of shown graphs 0..i at j, so sum of the last graph is total of the column.
+ * Sums are computed once at load and updated by one pass over toggled graph and graphs above it,
+ * drawing reads them without summing columns.
+ * Sums of packed and paged charts are packed too. They are encoded block by block from values of the chart,
+ * so sums of all graphs are never on heap at once, and toggle re-encodes them in place.
+ */
+class Stacks {
+  private final ChartData chart;
+  /**
+   * Sums on heap, null when they are packed.
+   */
+  private int[][] sums;
+  /**
+   * Packed sums of all graphs, null when they are on heap.
+   */
+  private PackedStore packedSums;
+  private final boolean[] shown;
+  /**
+   * Max and min of totals on heap, packed totals have their own summary.
+   */
+  private RangeIndex totals;
+
+  /**
+   * Sums of one block computed from values of chart, see PackedStore.Source.
+   */
+  private final PackedStore.Source sumsSource = new PackedStore.Source() {
+    @Override
+    public void read(final int start, final int end, final int[][] out) {
+      for (int i = 0; i < chart.graphsCount; i++) {
+        int[] sum = out[i];
+        int[] below = i > 0 ? out[i - 1] : null;
+        for (int j = start; j < end; j++) {
+          int value = shown[i] ? chart.value(i, j) : 0;
+          sum[j - start] = below != null ? below[j - start] + value : value;
+        }
+      }
+    }
+  };
+
+  /**
+   * Build sums with all graphs shown, they are packed when columns of chart aren't on heap.
+   *
+   * @param chart chart with filled values.
+   */
+  Stacks(final ChartData chart) {
+    this.chart = chart;
+    shown = new boolean[chart.graphsCount];
+    for (int i = 0; i < chart.graphsCount; i++) {
+      shown[i] = true;
+    }
+    if (chart.store != null) {
+      pack();
+      return;
+    }
+    int count = chart.valuesCount;
+    sums = new int[chart.graphsCount][count];
+    for (int i = 0; i < chart.graphsCount; i++) {
+      int[] sum = sums[i];
+      if (i == 0) {
+        for (int j = 0; j < count; j++) {
+          sum[j] = chart.value(i, j);
+        }
+      } else {
+        int[] below = sums[i - 1];
+        for (int j = 0; j < count; j++) {
+          sum[j] = below[j] + chart.value(i, j);
+        }
+      }
+    }
+    totals = new RangeIndex(sums[chart.graphsCount - 1], count);
+  }
+
+  /**
+   * Replace heap sums with packed ones, called when columns of chart leave heap.
+   */
+  void pack() {
+    if (packedSums != null) {
+      return;
+    }
+    packedSums = new PackedStore(null, sumsSource, chart.graphsCount, chart.valuesCount);
+    sums = null;
+    totals = null;
+  }
+
+  /**
+   * Add graph to sums or remove it. Costs O(n) per graph from toggled one to the top, heap sums
+   * and their index are updated in place and packed sums are re-encoded into their buffers.
+   *
+   * @param graph index of graph.
+   * @param show  true if graph is shown.
+   */
+  void setShown(final int graph, final boolean show) {
+    if (shown[graph] == show) {
+      return;
+    }
+    shown[graph] = show;
+    if (sums == null) {
+      packedSums.update(sumsSource, graph);
+      return;
+    }
+    int count = chart.valuesCount;
+    int sign = show ? 1 : -1;
+    for (int i = graph; i < chart.graphsCount; i++) {
+      int[] sum = sums[i];
+      for (int j = 0; j < count; j++) {
+        sum[j] += sign * chart.value(graph, j);
+      }
+    }
+    totals.setValues(sums[chart.graphsCount - 1], count);
+  }
+
+  boolean isShown(final int graph) {
+    return shown[graph];
+  }
+
+  /**
+   * @param graph index of graph.
+   * @param index index of value.
+   * @return sum of shown graphs from the first one to graph.
+   */
+  int sum(final int graph, final int index) {
+    return sums != null ? sums[graph][index] : packedSums.value(graph, index);
+  }
+
+  /**
+   * @param index index of value.
+   * @return sum of all shown graphs.
+   */
+  int total(final int index) {
+    return sum(chart.graphsCount - 1, index);
+  }
+
+  /**
+   * @param from first index, inclusive.
+   * @param to   last index, exclusive.
+   * @return max total in range.
+   */
+  int totalMax(final int from, final int to) {
+    return sums != null ? totals.max(from, to) : packedSums.rangeMax(chart.graphsCount - 1, from, to);
+  }
+}
@@ -0,0 +1,126 @@
+package com.filenkov.tgchart;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that core parts of the draw path don't allocate once warmed up: labels, decimation,
+ * range queries and vertices. Allocated bytes of the test thread are read from HotSpot ThreadMXBean,
+ * the test is skipped on JVMs without it. A small fixed TOLERANCE absorbs allocations of JIT,
+ * which don't grow with count of frames. Draw of ChartView itself is checked by ChartViewAllocationTest of app.
+ */
+public class AllocationTest {
+  private static final int WARMUP = 2000;
+  private static final int RUNS = 500;
+  /**
+   * Bytes which JIT compilation and deoptimization may allocate on the test thread during the runs.
+   * A frame which allocates even one object of 16 bytes allocates 8000 bytes in RUNS frames.
+   */
+  private static final long TOLERANCE = 1024;
+
+  private com.sun.management.ThreadMXBean threads;
+  private long threadId;
+
+  @Before
+  public void setUp() {
+    Object bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    threads = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+    threadId = Thread.currentThread().getId();
+  }
+
+  @Test
+  public void formatters() {
+    final char[] out = new char[FrameMetrics.SUMMARY_LENGTH];
+    final DateLabels labels = new DateLabels(new DateFormatter(Locale.US), true, 16);
+    final ChartData chart = SyntheticCharts.create(1, 1000, 41);
+    labels.setChart(chart);
+    final FrameMetrics metrics = new FrameMetrics();
+    metrics.recordDraw(1_000_000);
+    assertNoAllocation(new Runnable() {
+      private int i;
+
+      @Override
+      public void run() {
+        i++;
+        IntFormatter.format(-1234567L * i, out);
+        labels.label(i % chart.valuesCount); // misses cache, so label is formatted
+        FrameMetrics.summary("draw", metrics.draw(), out);
+      }
+    });
+  }
+
+  @Test
+  public void heapChartGeometry() {
+    checkGeometry(SyntheticCharts.create(2, 100_000, 42));
+  }
+
+  @Test
+  public void packedChartGeometry() {
+    ChartData chart = SyntheticCharts.create(2, 100_000, 43);
+    chart.pack();
+    checkGeometry(chart);
+  }
+
+  @Test
+  public void liveChartGeometry() {
+    ChartData chart = SyntheticCharts.create(2, 100_000, 44);
+    chart.makeLive(50_000);
+    checkGeometry(chart);
+  }
+
+  /**
+   * Range max and decimated vertices of a moving window, like a drag of the window does it every frame.
+   */
+  private void checkGeometry(final ChartData chart) {
+    final int width = chart.valuesCount / 4;
+    final int bucketSize = Decimator.bucketSize(width, 720);
+    final int capacity = Decimator.capacity(0, width, bucketSize);
+    final int[] indices = new int[capacity];
+    final int[] values = new int[capacity];
+    final float[] vertices = new float[4 * capacity];
+    final char[] out = new char[FrameMetrics.SUMMARY_LENGTH];
+    assertNoAllocation(new Runnable() {
+      private int i;
+
+      @Override
+      public void run() {
+        int from = (i++ * 997) % (chart.valuesCount - width);
+        int max = 0;
+        for (int graph = 0; graph < chart.graphsCount; graph++) {
+          max = Math.max(max, chart.rangeMax(graph, from, from + width));
+        }
+        for (int graph = 0; graph < chart.graphsCount; graph++) {
+          int count = chart.buckets(graph, from, from + width - 1, bucketSize, indices, values, 0);
+          LineVertices.fill(indices, values, count, -from, 720f / width, 400, 400f / max, vertices);
+        }
+        if (chart.store instanceof PackedStore) {
+          ((PackedStore) chart.store).sizeSummary(out);
+        }
+      }
+    });
+  }
+
+  private void assertNoAllocation(final Runnable frame) {
+    for (int i = 0; i < WARMUP; i++) {
+      frame.run();
+    }
+    // reading the counter may allocate itself, so it's measured without frames first
+    long start = threads.getThreadAllocatedBytes(threadId);
+    long empty = threads.getThreadAllocatedBytes(threadId) - start;
+    start = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < RUNS; i++) {
+      frame.run();
+    }
+    long allocated = threads.getThreadAllocatedBytes(threadId) - start - empty;
+    assertTrue(allocated + " bytes allocated by " + RUNS + " frames", allocated <= TOLERANCE);
+  }
+}
@@ -0,0 +1,154 @@
+package com.filenkov.tgchart;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChartDataReaderTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String LINE_CHART = "{\"columns\":[[\"x\",1542412800000,1542499200000,1542585600000],"
+      + "[\"y0\",37,20,-5],[\"y1\",22,12,30]],"
+      + "\"types\":{\"y0\":\"line\",\"y1\":\"line\",\"x\":\"x\"},"
+      + "\"names\":{\"y0\":\"#0\",\"y1\":\"#1\"},"
+      + "\"colors\":{\"y0\":\"#3DC23F\",\"y1\":\"#F34C44\"}}";
+
+  @Test
+  public void matchesJsonObjectReader() throws IOException, JSONException {
+    String json = "[" + LINE_CHART + ","
+        + "{\"columns\":[[\"x\",1,2],[\"y0\",3,4],[\"y1\",5,6],[\"y2\",7,8]],"
+        + "\"types\":{\"y0\":\"bar\",\"y1\":\"bar\",\"y2\":\"bar\",\"x\":\"x\"},"
+        + "\"names\":{\"y0\":\"a\",\"y1\":\"b\",\"y2\":\"c\"},"
+        + "\"colors\":{\"y0\":\"#000000\",\"y1\":\"#111111\",\"y2\":\"#222222\"},\"stacked\":true}]";
+    ChartData[] charts = read(json).readCharts();
+    JSONArray array = new JSONArray(json);
+    assertEquals(array.length(), charts.length);
+    for (int i = 0; i < charts.length; i++) {
+      assertSameChart(new ChartData(array.getJSONObject(i)), charts[i]);
+    }
+  }
+
+  @Test
+  public void keysInAnyOrderAndUnknownKeys() throws IOException, JSONException {
+    String json = "{ \"colors\" : {\"y0\":\"#3DC23F\"}, \"extra\": [1, {\"a\": [true, null]}, \"}\"],\n"
+        + "\"names\":{\"y0\":\"#0\"}, \"percentage\": true, \"y_scaled\": false,\n"
+        + "\"columns\": [[\"y0\", 1, 2], [\"x\", 10, 20]], \"types\": {\"x\": \"x\", \"y0\": \"area\"} }";
+    ChartData chart = read(json).readChart();
+    assertEquals(1, chart.graphsCount);
+    assertEquals(2, chart.valuesCount);
+    assertEquals(ChartData.CHART_AREA, chart.type);
+    assertTrue(chart.percentage);
+    assertFalse(chart.yScaled);
+    assertArrayEquals(new long[]{10, 20}, chart.timeline);
+    assertArrayEquals(new int[]{1, 2}, chart.graphs[0]);
+    assertEquals(2, chart.maximums[0]);
+  }
+
+  @Test
+  public void firstNonLineGraphSetsType() throws IOException, JSONException {
+    String json = "{\"columns\":[[\"x\",1],[\"y0\",1],[\"y1\",2],[\"y2\",3]],"
+        + "\"types\":{\"x\":\"x\",\"y0\":\"line\",\"y1\":\"bar\",\"y2\":\"area\"},"
+        + "\"names\":{\"y0\":\"a\",\"y1\":\"b\",\"y2\":\"c\"},"
+        + "\"colors\":{\"y0\":\"#000000\",\"y1\":\"#000000\",\"y2\":\"#000000\"}}";
+    assertEquals(ChartData.CHART_BAR, read(json).readChart().type);
+  }
+
+  @Test
+  public void escapesAndSurrogatePairs() throws IOException, JSONException {
+    assertEquals("a\"b\\c/d\n\t\u00e9\u4e2d", name("a\\\"b\\\\c\\/d\\n\\t\\u00e9\\u4e2d"));
+    assertEquals("\ud83d\ude00!", name("\\ud83d\\ude00!"));
+    assertEquals("\u00e9\ud83d\ude00", name("\u00e9\ud83d\ude00")); // raw UTF-8 stays as is
+    String unpaired = name("a\\ud83dx");
+    assertTrue(unpaired, unpaired.startsWith("a") && unpaired.endsWith("x"));
+    for (int i = 0; i < unpaired.length(); i++) {
+      assertFalse(Character.isSurrogate(unpaired.charAt(i)));
+    }
+    assertTrue(name("\\ud83d\\ud83d\\ude00").endsWith("\ud83d\ude00"));
+  }
+
+  @Test
+  public void emptyArrayOfCharts() throws IOException, JSONException {
+    assertEquals(0, read("[]").readCharts().length);
+  }
+
+  @Test(expected = JSONException.class)
+  public void emptyColumns() throws IOException, JSONException {
+    read("{\"columns\":[],\"types\":{},\"names\":{},\"colors\":{}}").readChart();
+  }
+
+  @Test(expected = JSONException.class)
+  public void columnsOfDifferentLength() throws IOException, JSONException {
+    read("{\"columns\":[[\"x\",1,2],[\"y0\",1]],\"types\":{\"x\":\"x\",\"y0\":\"line\"},"
+        + "\"names\":{\"y0\":\"a\"},\"colors\":{\"y0\":\"#000000\"}}").readChart();
+  }
+
+  @Test(expected = JSONException.class)
+  public void missingNames() throws IOException, JSONException {
+    read("{\"columns\":[[\"x\",1]],\"types\":{\"x\":\"x\"},\"colors\":{}}").readChart();
+  }
+
+  @Test(expected = JSONException.class)
+  public void unterminatedString() throws IOException, JSONException {
+    read("{\"columns").readChart();
+  }
+
+  @Test
+  public void objectBounds() throws JSONException {
+    String json = " [ {\"a\":\"}{\\\"\"} , {\"b\":[{}]} ] ";
+    byte[] bytes = json.getBytes(UTF_8);
+    int[] bounds = ChartDataReader.objectBounds(bytes, bytes.length);
+    assertEquals(4, bounds.length);
+    assertEquals("{\"a\":\"}{\\\"\"}", json.substring(bounds[0], bounds[1]));
+    assertEquals("{\"b\":[{}]}", json.substring(bounds[2], bounds[3]));
+  }
+
+  @Test(expected = JSONException.class)
+  public void objectBoundsOfUnbalancedJson() throws JSONException {
+    byte[] bytes = "[{}]]".getBytes(UTF_8);
+    ChartDataReader.objectBounds(bytes, bytes.length);
+  }
+
+  @Test(expected = JSONException.class)
+  public void objectBoundsOfTruncatedJson() throws JSONException {
+    byte[] bytes = "[{\"a\":\"b}]".getBytes(UTF_8);
+    ChartDataReader.objectBounds(bytes, bytes.length);
+  }
+
+  private static ChartDataReader read(final String json) {
+    return new ChartDataReader(new ByteArrayInputStream(json.getBytes(UTF_8)));
+  }
+
+  /**
+   * @return name of the only graph of chart with name written as is to json.
+   */
+  private static String name(final String escaped) throws IOException, JSONException {
+    String json = "{\"columns\":[[\"x\",1],[\"y0\",1]],\"types\":{\"x\":\"x\",\"y0\":\"line\"},"
+        + "\"names\":{\"y0\":\"" + escaped + "\"},\"colors\":{\"y0\":\"#000000\"}}";
+    return read(json).readChart().names[0];
+  }
+
+  private static void assertSameChart(final ChartData expected, final ChartData actual) {
+    assertEquals(expected.graphsCount, actual.graphsCount);
+    assertEquals(expected.valuesCount, actual.valuesCount);
+    assertEquals(expected.type, actual.type);
+    assertEquals(expected.yScaled, actual.yScaled);
+    assertEquals(expected.stacked, actual.stacked);
+    assertEquals(expected.percentage, actual.percentage);
+    assertArrayEquals(expected.timeline, actual.timeline);
+    assertArrayEquals(expected.maximums, actual.maximums);
+    assertArrayEquals(expected.colors, actual.colors);
+    assertArrayEquals(expected.names, actual.names);
+    for (int i = 0; i < expected.graphsCount; i++) {
+      assertArrayEquals(expected.graphs[i], actual.graphs[i]);
+    }
+    assertEquals(expected.stacks == null, actual.stacks == null);
+  }
+}
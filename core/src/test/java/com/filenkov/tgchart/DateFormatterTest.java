@@ -0,0 +1,61 @@
+package com.filenkov.tgchart;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class DateFormatterTest {
+  private TimeZone defaultTimeZone;
+
+  @Before
+  public void setUp() {
+    defaultTimeZone = TimeZone.getDefault();
+  }
+
+  @After
+  public void tearDown() {
+    TimeZone.setDefault(defaultTimeZone);
+  }
+
+  @Test
+  public void matchesSimpleDateFormatInUtc() {
+    check("UTC", Locale.US);
+  }
+
+  @Test
+  public void matchesSimpleDateFormatWithOffset() {
+    check("America/Los_Angeles", Locale.US);
+    check("Asia/Kolkata", Locale.US);
+  }
+
+  @Test
+  public void localizedNames() {
+    check("Europe/Moscow", new Locale("ru"));
+  }
+
+  /**
+   * Compare labels of every day from 1600 to 2400 and hours around midnight.
+   */
+  private static void check(final String timeZone, final Locale locale) {
+    TimeZone.setDefault(TimeZone.getTimeZone(timeZone));
+    DateFormatter formatter = new DateFormatter(locale);
+    SimpleDateFormat date = new SimpleDateFormat("MMM d", locale);
+    SimpleDateFormat weekdayDate = new SimpleDateFormat("EEE, MMM d", locale);
+    char[] out = new char[DateFormatter.MAX_LENGTH];
+    long from = -11676096000000L; // 1600-01-01
+    long to = 13569465600000L; // 2400-01-01
+    for (long millis = from; millis < to; millis += SyntheticCharts.DAY + 3_600_000L * 7) {
+      Date d = new Date(millis);
+      assertEquals(millis + " " + timeZone, date.format(d), new String(out, 0, formatter.formatDate(millis, out)));
+      assertEquals(millis + " " + timeZone, weekdayDate.format(d),
+          new String(out, 0, formatter.formatWeekdayDate(millis, out)));
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.filenkov.tgchart;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DecimatorTest {
+  @Test
+  public void bucketSizeFitsWidth() {
+    assertEquals(1, Decimator.bucketSize(100, 1000));
+    assertEquals(1, Decimator.bucketSize(1000, 1000));
+    assertEquals(2, Decimator.bucketSize(1001, 1000));
+    assertEquals(1024, Decimator.bucketSize(1000000, 1000));
+    assertEquals(1, Decimator.bucketSize(0, 0));
+    assertEquals(8, Decimator.bucketSize(8, 0)); // never wider than all points
+  }
+
+  @Test
+  public void bucketKeepsMinAndMaxInOrder() {
+    int[] values = SyntheticCharts.values(10000, 3);
+    for (int bucketSize = 2; bucketSize <= 256; bucketSize <<= 1) {
+      int from = 37;
+      int to = 9001;
+      int capacity = Decimator.capacity(from, to, bucketSize);
+      int[] indices = new int[capacity];
+      int[] kept = new int[capacity];
+      int count = Decimator.buckets(values, 0, from, to, bucketSize, indices, kept, 0);
+      assertTrue(count <= capacity - 2);
+
+      int k = 0;
+      for (int bucket = (from / bucketSize) * bucketSize; bucket <= to; bucket += bucketSize) {
+        int start = Math.max(bucket, from);
+        int end = Math.min(bucket + bucketSize - 1, to);
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int j = start; j <= end; j++) {
+          min = Math.min(min, values[j]);
+          max = Math.max(max, values[j]);
+        }
+        int bucketMin = Integer.MAX_VALUE;
+        int bucketMax = Integer.MIN_VALUE;
+        int previous = -1;
+        for (; k < count && indices[k] <= end; k++) {
+          assertTrue(indices[k] >= start && indices[k] > previous);
+          assertEquals(values[indices[k]], kept[k]);
+          bucketMin = Math.min(bucketMin, kept[k]);
+          bucketMax = Math.max(bucketMax, kept[k]);
+          previous = indices[k];
+        }
+        assertEquals(min, bucketMin);
+        assertEquals(max, bucketMax);
+      }
+      assertEquals(count, k);
+    }
+  }
+
+  @Test
+  public void bucketsAreAlignedToIndices() {
+    int[] values = SyntheticCharts.values(4096, 4);
+    int bucketSize = 64;
+    int[] a = keep(values, 0, 100, 3000, bucketSize);
+    int[] b = keep(values, 0, 130, 3100, bucketSize);
+    // buckets 192..2943 are complete in both ranges
+    assertArrayEquals(slice(a, 192, 2943), slice(b, 192, 2943));
+  }
+
+  @Test
+  public void offsetShiftsIndices() {
+    int[] values = SyntheticCharts.values(1000, 5);
+    int[] tail = Arrays.copyOfRange(values, 200, 1000);
+    assertArrayEquals(keep(values, 0, 256, 900, 16), keep(tail, 200, 256, 900, 16));
+  }
+
+  @Test
+  public void bucketOfOneKeepsAllValues() {
+    int[] values = SyntheticCharts.values(50, 6);
+    int[] indices = new int[Decimator.capacity(10, 20, 1)];
+    int[] kept = new int[indices.length];
+    int count = Decimator.buckets(values, 0, 10, 20, 1, indices, kept, 3);
+    assertEquals(14, count);
+    for (int k = 3; k < count; k++) {
+      assertEquals(7 + k, indices[k]);
+      assertEquals(values[7 + k], kept[k]);
+    }
+  }
+
+  @Test
+  public void emptyRangeKeepsCount() {
+    int[] values = SyntheticCharts.values(10, 7);
+    assertEquals(5, Decimator.buckets(values, 0, 6, 5, 4, new int[10], new int[10], 5));
+  }
+
+  /**
+   * @return indices of kept values.
+   */
+  private static int[] keep(final int[] values, final int offset, final int from, final int to, final int bucketSize) {
+    int[] indices = new int[Decimator.capacity(from, to, bucketSize)];
+    int count = Decimator.buckets(values, offset, from, to, bucketSize, indices, new int[indices.length], 0);
+    return Arrays.copyOf(indices, count);
+  }
+
+  /**
+   * @return kept indices in from..to inclusive.
+   */
+  private static int[] slice(final int[] indices, final int from, final int to) {
+    int start = 0;
+    while (indices[start] < from) {
+      start++;
+    }
+    int end = start;
+    while (end < indices.length && indices[end] <= to) {
+      end++;
+    }
+    return Arrays.copyOfRange(indices, start, end);
+  }
+}
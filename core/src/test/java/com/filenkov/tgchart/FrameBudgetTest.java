@@ -0,0 +1,116 @@
+package com.filenkov.tgchart;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drags window over synthetic charts of increasing size and checks that geometry of a frame fits
+ * half of frame budget, the other half is left for Canvas. A frame does what ChartView does on selection
+ * change: finds max of graphs in window, decimates window with margins and fills vertices of 720 px width.
+ */
+public class FrameBudgetTest {
+  private static final int WIDTH = 720;
+  private static final int GRAPHS_COUNT = 2;
+  private static final long SEED = 18;
+  private static final int DRAG_FRAMES = 60;
+  /**
+   * Drags before the measured one, JIT compiles on the same CPU otherwise.
+   */
+  private static final int WARMUP_DRAGS = 10;
+  /**
+   * Measured drags, the best one is checked, so a pause of GC or another process doesn't fail the test.
+   */
+  private static final int MEASURED_DRAGS = 5;
+
+  @Test
+  public void smallChart() {
+    check(SyntheticCharts.create(GRAPHS_COUNT, 112, SEED));
+  }
+
+  @Test
+  public void mediumChart() {
+    check(SyntheticCharts.create(GRAPHS_COUNT, 10000, SEED));
+  }
+
+  @Test
+  public void largeChart() {
+    check(SyntheticCharts.create(GRAPHS_COUNT, 1000000, SEED));
+  }
+
+  @Test
+  public void largePackedChart() {
+    ChartData chart = SyntheticCharts.create(GRAPHS_COUNT, 1000000, SEED);
+    chart.pack();
+    check(chart);
+  }
+
+  private static void check(final ChartData chart) {
+    Frame frame = new Frame(chart);
+    FrameMetrics metrics = new FrameMetrics();
+    for (int i = 0; i < WARMUP_DRAGS; i++) {
+      drag(frame, metrics);
+    }
+    System.gc(); // garbage of chart creation isn't collected during measured drags
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < MEASURED_DRAGS && best > FrameMetrics.FRAME_BUDGET_NS / 2; i++) {
+      metrics.reset();
+      drag(frame, metrics);
+      best = Math.min(best, metrics.prepare().percentileNs(95));
+    }
+    assertTrue("prepare p95 " + best + " ns of " + chart.valuesCount + " values",
+        best <= FrameMetrics.FRAME_BUDGET_NS / 2);
+  }
+
+  private static void drag(final Frame frame, final FrameMetrics metrics) {
+    int count = frame.chart.valuesCount;
+    int width = Math.max(2, count / 4);
+    double step = (double) (count - width) / DRAG_FRAMES;
+    for (int i = 0; i < DRAG_FRAMES; i++) {
+      long start = System.nanoTime();
+      frame.prepare((int) (i * step), width);
+      metrics.recordPrepare(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Geometry of one frame with buffers reused between frames like in ChartView.
+   */
+  private static class Frame {
+    final ChartData chart;
+    int[] indices = new int[0];
+    int[] values = new int[0];
+    float[] vertices = new float[0];
+
+    Frame(final ChartData chart) {
+      this.chart = chart;
+    }
+
+    void prepare(final int selectionStart, final int width) {
+      int selectionEnd = selectionStart + width - 1;
+      int max = 1;
+      for (int graph = 0; graph < chart.graphsCount; graph++) {
+        max = Math.max(max, chart.rangeMax(graph, selectionStart, selectionEnd + 1));
+      }
+      int margin = width / 4;
+      int from = Math.max(0, selectionStart - margin);
+      int to = Math.min(selectionEnd + margin, chart.valuesCount - 1);
+      int bucketSize = Decimator.bucketSize(width, WIDTH);
+      int capacity = Decimator.capacity(from, to, bucketSize);
+      if (indices.length < capacity) {
+        indices = new int[capacity];
+        values = new int[capacity];
+        vertices = new float[4 * capacity];
+      }
+      float stepX = (float) WIDTH / width;
+      for (int graph = 0; graph < chart.graphsCount; graph++) {
+        indices[0] = from;
+        values[0] = chart.value(graph, from);
+        int count = chart.buckets(graph, from + 1, to - 1, bucketSize, indices, values, 1);
+        indices[count] = to;
+        values[count++] = chart.value(graph, to);
+        LineVertices.fill(indices, values, count, -selectionStart * stepX, stepX, 400, 400f / max, vertices);
+      }
+    }
+  }
+}
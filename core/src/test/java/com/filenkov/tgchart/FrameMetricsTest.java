@@ -0,0 +1,81 @@
+package com.filenkov.tgchart;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FrameMetricsTest {
+  private static final long MS = 1_000_000;
+
+  @Test
+  public void percentilesAreBucketBounds() {
+    FrameMetrics metrics = new FrameMetrics();
+    for (int i = 0; i < 90; i++) {
+      metrics.recordDraw(MS);
+    }
+    for (int i = 0; i < 10; i++) {
+      metrics.recordDraw(20 * MS);
+    }
+    FrameMetrics.Histogram draw = metrics.draw();
+    assertEquals(100, draw.count());
+    assertEquals(3 * MS / 2, draw.percentileNs(50));
+    assertEquals(3 * MS / 2, draw.percentileNs(90));
+    assertEquals(20 * MS, draw.percentileNs(95)); // upper bound of bucket is limited by max
+    assertEquals(20 * MS, draw.maxNs());
+    assertEquals(29 * MS / 10, draw.averageNs());
+    assertEquals(10, draw.overBudgetCount());
+    assertEquals(90, draw.bucketCount(2));
+    assertEquals(0, metrics.prepare().count());
+  }
+
+  @Test
+  public void longDurationsGoToLastBucket() {
+    FrameMetrics.Histogram histogram = new FrameMetrics.Histogram();
+    histogram.record(-5);
+    histogram.record(FrameMetrics.FRAME_BUDGET_NS);
+    histogram.record(1000 * MS);
+    assertEquals(1, histogram.bucketCount(0));
+    assertEquals(1, histogram.bucketCount(histogram.bucketsCount() - 1));
+    assertEquals(1000 * MS, histogram.percentileNs(100));
+    assertEquals(1, histogram.overBudgetCount()); // exactly budget isn't slow
+    assertEquals(0, new FrameMetrics.Histogram().percentileNs(50));
+  }
+
+  @Test
+  public void skippedFramesOfTicks() {
+    FrameMetrics metrics = new FrameMetrics();
+    long frame = FrameMetrics.FRAME_BUDGET_NS;
+    metrics.recordTick(MS, 0);
+    metrics.recordTick(MS, frame);
+    metrics.recordTick(MS, frame * 14 / 10);
+    assertEquals(0, metrics.skippedFrames());
+    metrics.recordTick(MS, 2 * frame);
+    assertEquals(1, metrics.skippedFrames());
+    metrics.recordTick(2 * MS, frame * 36 / 10);
+    assertEquals(4, metrics.skippedFrames());
+    assertEquals(5, metrics.tickLateness().count());
+    metrics.reset();
+    assertEquals(0, metrics.skippedFrames());
+    assertEquals(0, metrics.tickLateness().count());
+  }
+
+  @Test
+  public void summary() {
+    FrameMetrics metrics = new FrameMetrics();
+    metrics.recordDraw(MS);
+    metrics.recordDraw(20 * MS);
+    char[] out = new char[FrameMetrics.SUMMARY_LENGTH];
+    assertEquals("draw 2 p50 1.5 p95 20.0 max 20.0 ms, 1 slow",
+        new String(out, 0, FrameMetrics.summary("draw", metrics.draw(), out)));
+    assertEquals("empty 0 p50 0.0 p95 0.0 max 0.0 ms, 0 slow",
+        new String(out, 0, FrameMetrics.summary("empty", metrics.prepare(), out)));
+  }
+
+  @Test
+  public void appendMsRounds() {
+    char[] out = new char[16];
+    assertEquals("12.3", new String(out, 0, FrameMetrics.appendMs(12_349_999, out, 0)));
+    assertEquals("12.4", new String(out, 0, FrameMetrics.appendMs(12_350_000, out, 0)));
+    assertEquals("0.0", new String(out, 0, FrameMetrics.appendMs(0, out, 0)));
+  }
+}
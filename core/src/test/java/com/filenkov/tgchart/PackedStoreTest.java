@@ -0,0 +1,141 @@
+package com.filenkov.tgchart;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PackedStoreTest {
+  private static final int COUNT = 3 * PackedStore.BLOCK_SIZE + 17;
+
+  @Test
+  public void uniformTimeline() {
+    ChartData chart = SyntheticCharts.create(2, COUNT, 11);
+    check(chart.timeline, chart.graphs, new PackedStore(chart.timeline, chart.graphs, COUNT));
+  }
+
+  @Test
+  public void irregularTimelineAndExtremeValues() {
+    Random random = new Random(12);
+    long[] timeline = new long[COUNT];
+    int[] values = new int[COUNT];
+    long time = -SyntheticCharts.DAY * 100;
+    for (int i = 0; i < COUNT; i++) {
+      time += random.nextInt(3) == 0 ? random.nextInt(1000) : SyntheticCharts.DAY * random.nextInt(1000);
+      timeline[i] = time;
+      // deltas of neighbours overflow int
+      values[i] = i % 3 == 0 ? Integer.MIN_VALUE : i % 3 == 1 ? Integer.MAX_VALUE : random.nextInt() >> random.nextInt(32);
+    }
+    int[][] graphs = {values, SyntheticCharts.values(COUNT, 13)};
+    check(timeline, graphs, new PackedStore(timeline, graphs, COUNT));
+  }
+
+  @Test
+  public void nullTimeline() {
+    int[][] graphs = {SyntheticCharts.values(COUNT, 14)};
+    PackedStore store = new PackedStore(null, graphs, COUNT);
+    check(new long[COUNT], graphs, store);
+  }
+
+  @Test
+  public void tinyColumns() {
+    for (int count = 0; count <= 2; count++) {
+      ChartData chart = SyntheticCharts.create(1, count, 15);
+      check(chart.timeline, chart.graphs, new PackedStore(chart.timeline, chart.graphs, count));
+    }
+  }
+
+  @Test
+  public void updateReencodesGraphsInPlace() {
+    int[][] graphs = {SyntheticCharts.values(COUNT, 18), SyntheticCharts.values(COUNT, 19)};
+    PackedStore store = new PackedStore(null, graphs, COUNT);
+    // values jump further than random walk, blocks outgrow their old size
+    final int[][] updated = {graphs[0], new int[COUNT]};
+    for (int i = 0; i < COUNT; i++) {
+      updated[1][i] = i % 2 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+    }
+    store.update(new PackedStore.Source() {
+      @Override
+      public void read(final int start, final int end, final int[][] out) {
+        for (int graph = 0; graph < updated.length; graph++) {
+          System.arraycopy(updated[graph], start, out[graph], 0, end - start);
+        }
+      }
+    }, 1);
+    check(new long[COUNT], updated, store);
+  }
+
+  @Test
+  public void packedChartMatchesHeapChart() {
+    ChartData heap = SyntheticCharts.create(2, COUNT, 16);
+    ChartData packed = SyntheticCharts.create(2, COUNT, 16);
+    packed.pack();
+    for (int graph = 0; graph < 2; graph++) {
+      for (int bucketSize = 1; bucketSize <= 1024; bucketSize <<= 2) {
+        int from = 5;
+        int to = COUNT - 3;
+        int capacity = Decimator.capacity(from, to, bucketSize);
+        int[] heapIndices = new int[capacity];
+        int[] heapValues = new int[capacity];
+        int[] packedIndices = new int[capacity];
+        int[] packedValues = new int[capacity];
+        int heapCount = heap.buckets(graph, from, to, bucketSize, heapIndices, heapValues, 0);
+        int packedCount = packed.buckets(graph, from, to, bucketSize, packedIndices, packedValues, 0);
+        assertEquals(heapCount, packedCount);
+        assertArrayEquals(heapIndices, packedIndices);
+        assertArrayEquals(heapValues, packedValues);
+      }
+    }
+  }
+
+  @Test
+  public void sizeSummary() {
+    ChartData chart = SyntheticCharts.create(2, COUNT, 17);
+    PackedStore store = new PackedStore(chart.timeline, chart.graphs, COUNT);
+    char[] out = new char[FrameMetrics.SUMMARY_LENGTH];
+    String summary = new String(out, 0, store.sizeSummary(out));
+    assertTrue(summary, summary.startsWith("packed " + store.packedSize() + " B "));
+    assertTrue(summary, summary.endsWith(" B/point"));
+    // random walk steps fit 1 or 2 bytes
+    assertTrue(summary, store.packedSize() < 2L * COUNT * 2);
+  }
+
+  @Test
+  public void bytesPerPoint() {
+    int count = 100000;
+    ChartData chart = SyntheticCharts.create(2, count, 20);
+    PackedStore store = new PackedStore(chart.timeline, chart.graphs, count);
+    long points = 2L * count;
+    // heap columns of 2 graphs take 8 B/point, README lists 1.4 B/point
+    assertTrue(store.packedSize() + " B", store.packedSize() * 10 <= points * 15);
+  }
+
+  private static void check(final long[] timeline, final int[][] graphs, final PackedStore store) {
+    int count = timeline.length;
+    Random random = new Random(count);
+    for (int i = 0; i < count; i++) {
+      assertEquals("time " + i, timeline[i], store.time(i));
+    }
+    for (int graph = 0; graph < graphs.length; graph++) {
+      int[] values = graphs[graph];
+      for (int i = count - 1; i >= 0; i--) {
+        assertEquals("value " + i, values[i], store.value(graph, i));
+      }
+      for (int k = 0; k < 100 && count > 0; k++) {
+        int from = random.nextInt(count);
+        int to = from + 1 + random.nextInt(count - from);
+        int max = Integer.MIN_VALUE;
+        int min = Integer.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+          max = Math.max(max, values[i]);
+          min = Math.min(min, values[i]);
+        }
+        assertEquals("max " + from + ".." + to, max, store.rangeMax(graph, from, to));
+        assertEquals("min " + from + ".." + to, min, store.rangeMin(graph, from, to));
+      }
+    }
+  }
+}
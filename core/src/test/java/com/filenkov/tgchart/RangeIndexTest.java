@@ -0,0 +1,80 @@
+package com.filenkov.tgchart;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class RangeIndexTest {
+  @Test
+  public void rangesMatchLinearScan() {
+    int[] values = SyntheticCharts.values(1000, 8);
+    RangeIndex index = new RangeIndex(values, values.length);
+    Random random = new Random(8);
+    for (int k = 0; k < 1000; k++) {
+      int from = random.nextInt(values.length);
+      int to = from + 1 + random.nextInt(values.length - from);
+      assertRange(values, index, from, to);
+    }
+    assertRange(values, index, 0, values.length);
+  }
+
+  @Test
+  public void oddCountAndSingleValue() {
+    for (int count = 1; count <= 17; count++) {
+      int[] values = SyntheticCharts.values(count, count);
+      RangeIndex index = new RangeIndex(values, count);
+      for (int from = 0; from < count; from++) {
+        for (int to = from + 1; to <= count; to++) {
+          assertRange(values, index, from, to);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void setUpdatesRanges() {
+    int[] values = SyntheticCharts.values(100, 9);
+    RangeIndex index = new RangeIndex(values, values.length);
+    values = values.clone(); // index keeps its own copy
+    Random random = new Random(9);
+    for (int k = 0; k < 200; k++) {
+      int i = random.nextInt(values.length);
+      values[i] = random.nextInt(4000) - 2000;
+      index.set(i, values[i]);
+      int from = random.nextInt(values.length);
+      int to = from + 1 + random.nextInt(values.length - from);
+      assertRange(values, index, from, to);
+    }
+  }
+
+  @Test
+  public void setValuesReplacesAll() {
+    RangeIndex index = new RangeIndex(SyntheticCharts.values(100, 10), 100);
+    int[] values = SyntheticCharts.values(100, 11);
+    index.setValues(values, values.length);
+    for (int from = 0; from < values.length; from += 7) {
+      assertRange(values, index, from, values.length);
+    }
+  }
+
+  @Test
+  public void emptyRange() {
+    RangeIndex index = new RangeIndex(new int[]{1, 2, 3}, 3);
+    assertEquals(Integer.MIN_VALUE, index.max(2, 2));
+    assertEquals(Integer.MAX_VALUE, index.min(2, 2));
+    assertEquals(Integer.MIN_VALUE, index.max(3, 1));
+  }
+
+  private static void assertRange(final int[] values, final RangeIndex index, final int from, final int to) {
+    int max = Integer.MIN_VALUE;
+    int min = Integer.MAX_VALUE;
+    for (int i = from; i < to; i++) {
+      max = Math.max(max, values[i]);
+      min = Math.min(min, values[i]);
+    }
+    assertEquals("max " + from + ".." + to, max, index.max(from, to));
+    assertEquals("min " + from + ".." + to, min, index.min(from, to));
+  }
+}
@@ -0,0 +1,108 @@
+package com.filenkov.tgchart;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RingStoreTest {
+  private static final int CAPACITY = 100;
+
+  @Test
+  public void keepsNewestValuesAcrossWraparound() {
+    RingStore ring = new RingStore(2, CAPACITY);
+    int[][] graphs = {SyntheticCharts.values(1000, 21), SyntheticCharts.values(1000, 22)};
+    int[] values = new int[2];
+    Random random = new Random(23);
+    for (int n = 0; n < 1000; n++) {
+      values[0] = graphs[0][n];
+      values[1] = graphs[1][n];
+      boolean dropped = ring.append(SyntheticCharts.START + n * SyntheticCharts.DAY, values);
+      assertEquals(n >= CAPACITY, dropped);
+      if (n % 37 == 0 || n == CAPACITY - 1 || n == CAPACITY) {
+        check(ring, graphs, n + 1, random);
+      }
+    }
+  }
+
+  @Test
+  public void bucketsAreAlignedToAbsoluteIndices() {
+    RingStore ring = new RingStore(1, CAPACITY);
+    int[] all = SyntheticCharts.values(250, 24);
+    for (int n = 0; n < all.length; n++) {
+      ring.append(n, new int[]{all[n]});
+    }
+    long first = ring.first();
+    assertEquals(150, first);
+    for (int bucketSize = 1; bucketSize <= 32; bucketSize <<= 1) {
+      int capacity = Decimator.capacity(3, 95, bucketSize);
+      int[] indices = new int[capacity];
+      int[] values = new int[capacity];
+      int count = ring.buckets(0, 3, 95, bucketSize, indices, values, 0);
+      int[] expectedIndices = new int[capacity];
+      int[] expectedValues = new int[capacity];
+      int expectedCount = Decimator.buckets(all, 0, (int) first + 3, (int) first + 95, bucketSize,
+          expectedIndices, expectedValues, 0);
+      assertEquals(expectedCount, count);
+      for (int k = 0; k < count; k++) {
+        expectedIndices[k] -= first;
+      }
+      assertArrayEquals(Arrays.copyOf(expectedIndices, count), Arrays.copyOf(indices, count));
+      assertArrayEquals(Arrays.copyOf(expectedValues, count), Arrays.copyOf(values, count));
+    }
+  }
+
+  @Test
+  public void partiallyFilled() {
+    RingStore ring = new RingStore(1, CAPACITY);
+    assertFalse(ring.append(5, new int[]{7}));
+    assertFalse(ring.append(6, new int[]{3}));
+    assertEquals(2, ring.size());
+    assertEquals(0, ring.first());
+    assertEquals(7, ring.rangeMax(0, 0, 2));
+    assertEquals(3, ring.rangeMin(0, 0, 2));
+    assertEquals(6, ring.time(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void tooSmallCapacity() {
+    new RingStore(1, 1);
+  }
+
+  /**
+   * Compare ring with the last CAPACITY of appended values.
+   */
+  private static void check(final RingStore ring, final int[][] graphs, final int appended, final Random random) {
+    int size = Math.min(appended, CAPACITY);
+    int start = appended - size;
+    assertEquals(size, ring.size());
+    assertEquals(start, ring.first());
+    for (int i = 0; i < size; i++) {
+      assertEquals(SyntheticCharts.START + (start + i) * SyntheticCharts.DAY, ring.time(i));
+    }
+    for (int graph = 0; graph < graphs.length; graph++) {
+      int[] values = graphs[graph];
+      for (int i = 0; i < size; i++) {
+        assertEquals(values[start + i], ring.value(graph, i));
+      }
+      for (int k = 0; k < 50; k++) {
+        int from = random.nextInt(size);
+        int to = from + 1 + random.nextInt(size - from);
+        int max = Integer.MIN_VALUE;
+        int min = Integer.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+          max = Math.max(max, values[start + i]);
+          min = Math.min(min, values[start + i]);
+        }
+        assertEquals(max, ring.rangeMax(graph, from, to));
+        assertEquals(min, ring.rangeMin(graph, from, to));
+      }
+      assertTrue(ring.rangeMax(graph, 0, size) >= ring.rangeMin(graph, 0, size));
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.filenkov.tgchart;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StacksTest {
+  private static final int GRAPHS_COUNT = 3;
+  private static final int COUNT = 1000;
+
+  @Test
+  public void heapSumsFollowToggles() {
+    ChartData chart = stackedChart();
+    check(chart, new boolean[]{true, true, true});
+    chart.stacks.setShown(1, false);
+    check(chart, new boolean[]{true, false, true});
+    chart.stacks.setShown(0, false);
+    chart.stacks.setShown(1, true);
+    check(chart, new boolean[]{false, true, true});
+  }
+
+  @Test
+  public void packedSumsMatchHeapSums() {
+    ChartData heap = stackedChart();
+    ChartData packed = stackedChart();
+    packed.pack();
+    boolean[][] steps = {{true, true, true}, {true, false, true}, {true, false, false}, {false, true, false}};
+    for (boolean[] shown : steps) {
+      for (int i = 0; i < GRAPHS_COUNT; i++) {
+        heap.stacks.setShown(i, shown[i]);
+        packed.stacks.setShown(i, shown[i]);
+      }
+      check(packed, shown);
+      for (int i = 0; i < GRAPHS_COUNT; i++) {
+        for (int j = 0; j < COUNT; j++) {
+          assertEquals(heap.stacks.sum(i, j), packed.stacks.sum(i, j));
+        }
+      }
+      assertEquals(heap.stacks.totalMax(17, 900), packed.stacks.totalMax(17, 900));
+    }
+  }
+
+  private static ChartData stackedChart() {
+    ChartData chart = SyntheticCharts.create(GRAPHS_COUNT, COUNT, 31);
+    chart.stacked = true;
+    chart.buildStacks();
+    return chart;
+  }
+
+  private static void check(final ChartData chart, final boolean[] shown) {
+    int totalMax = Integer.MIN_VALUE;
+    for (int j = 0; j < COUNT; j++) {
+      int sum = 0;
+      for (int i = 0; i < GRAPHS_COUNT; i++) {
+        assertEquals(shown[i], chart.stacks.isShown(i));
+        if (shown[i]) {
+          sum += chart.value(i, j);
+        }
+        assertEquals("sum " + i + " at " + j, sum, chart.stacks.sum(i, j));
+      }
+      assertEquals(sum, chart.stacks.total(j));
+      totalMax = Math.max(totalMax, sum);
+    }
+    assertEquals(totalMax, chart.stacks.totalMax(0, COUNT));
+  }
+}
@@ -0,0 +1,62 @@
+package com.filenkov.tgchart;
+
+import java.util.Random;
+
+/**
+ * Deterministic synthetic charts of any size for tests and benchmarks,
+ * the same seed always gives the same chart. Shared by JVM tests and benchmarks of core
+ * and by instrumentation tests of app.
+ */
+class SyntheticCharts {
+  static final long START = 1542412800000L;
+  static final long DAY = 86400000L;
+  private static final int[] COLORS = {0xff3cc23f, 0xfff34c44, 0xff3896e8, 0xfff5bd25};
+
+  private SyntheticCharts() {
+  }
+
+  /**
+   * Random walk values, non-negative like chart values.
+   *
+   * @param count count of values.
+   * @param seed  random seed.
+   * @return values.
+   */
+  static int[] values(final int count, final long seed) {
+    Random random = new Random(seed);
+    int[] values = new int[count];
+    int value = 1000;
+    for (int i = 0; i < count; i++) {
+      value = Math.max(0, value + random.nextInt(201) - 100);
+      values[i] = value;
+    }
+    return values;
+  }
+
+  /**
+   * Chart with daily timeline and random walk graphs, graph i uses seed + i.
+   *
+   * @param graphsCount count of graphs.
+   * @param valuesCount count of values in every graph.
+   * @param seed        random seed.
+   * @return chart with range index built.
+   */
+  static ChartData create(final int graphsCount, final int valuesCount, final long seed) {
+    ChartData chart = new ChartData(graphsCount, valuesCount);
+    for (int i = 0; i < valuesCount; i++) {
+      chart.timeline[i] = START + i * DAY;
+    }
+    for (int graph = 0; graph < graphsCount; graph++) {
+      chart.graphs[graph] = values(valuesCount, seed + graph);
+      int max = 0;
+      for (int value : chart.graphs[graph]) {
+        max = Math.max(max, value);
+      }
+      chart.maximums[graph] = max;
+      chart.colors[graph] = COLORS[graph % COLORS.length];
+      chart.names[graph] = "#" + graph;
+    }
+    chart.buildRangeIndex();
+    return chart;
+  }
+}